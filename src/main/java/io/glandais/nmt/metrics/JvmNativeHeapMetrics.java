@@ -0,0 +1,214 @@
+package io.glandais.nmt.metrics;
+
+import io.glandais.nmt.metrics.bean.NativeHeapInfo;
+import io.glandais.nmt.metrics.retriever.NMTStatsRetriever;
+import io.glandais.nmt.metrics.retriever.NativeHeapRetriever;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.jspecify.annotations.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ReflectionException;
+import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * glibc native heap fragmentation metrics, with an optional automatic trim controller.
+ * <p>
+ * Native heap info ({@code jcmd <pid> System.native_heap_info}) is read periodically on a background thread, and
+ * exposed as {@code jvm.memory.native.heap.*} gauges : arenas count, bytes obtained from the system by arenas, free
+ * bytes retained by arenas, and mmap bytes.
+ * </p>
+ * <p>
+ * When trimming is enabled and retained free bytes exceed the threshold, the native heap is trimmed
+ * ({@code jcmd <pid> System.trim_native_heap}), at most once per minimum trim interval. Trims are counted by
+ * {@code jvm.memory.native.heap.trims} and reclaimed RSS by {@code jvm.memory.native.heap.trim.reclaimed}.
+ * </p>
+ * <p>
+ * Native heap info is only available on Linux with glibc, and recent JDKs : when unavailable, nothing is registered
+ * and polling stops after the first attempt.
+ * </p>
+ */
+public class JvmNativeHeapMetrics implements MeterBinder, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JvmNativeHeapMetrics.class);
+
+    private final Duration interval;
+
+    private final boolean trimEnabled;
+
+    private final long trimThreshold;
+
+    private final Duration minTrimInterval;
+
+    private MeterRegistry meterRegistry;
+
+    private ScheduledExecutorService executor;
+
+    private volatile NativeHeapInfo info;
+
+    private Counter trims;
+
+    private Counter reclaimed;
+
+    private long lastTrimNanos;
+
+    private boolean trimmed;
+
+    public JvmNativeHeapMetrics() {
+        this(Duration.ofMinutes(1L), false, 64L * 1024 * 1024, Duration.ofMinutes(5L));
+    }
+
+    /**
+     * @param interval        interval between two native heap info reads
+     * @param trimEnabled     whether native heap is trimmed when retained free bytes exceed the threshold
+     * @param trimThreshold   retained free bytes triggering a trim
+     * @param minTrimInterval minimum interval between two trims
+     */
+    public JvmNativeHeapMetrics(final Duration interval, final boolean trimEnabled, final long trimThreshold,
+                                final Duration minTrimInterval) {
+        super();
+        this.interval = interval;
+        this.trimEnabled = trimEnabled;
+        this.trimThreshold = trimThreshold;
+        this.minTrimInterval = minTrimInterval;
+    }
+
+    /**
+     * Binds the metrics to a registry, starting polling. Binding again stops polling for the previous registry.
+     */
+    @Override
+    public synchronized void bindTo(final @NonNull MeterRegistry registry) {
+        close();
+        // meters are registered again on first read
+        this.trims = null;
+        this.reclaimed = null;
+        this.meterRegistry = registry;
+        final ScheduledThreadPoolExecutor scheduledExecutor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "nmt-metrics-native-heap");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduledExecutor.setRemoveOnCancelPolicy(true);
+        this.executor = scheduledExecutor;
+        this.executor.scheduleWithFixedDelay(this::poll, 0L, interval.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads native heap info, and trims native heap if needed.
+     */
+    protected synchronized void poll() {
+        final NativeHeapInfo current;
+        try {
+            current = NativeHeapRetriever.extractFromNativeHeapInfo(
+                    execute(NativeHeapRetriever.NATIVE_HEAP_INFO_COMMAND));
+        } catch (ReflectionException e) {
+            unavailable("System.native_heap_info is not supported by this JVM");
+            return;
+        } catch (JMException | RuntimeException e) {
+            LOGGER.debug("Native heap info failed", e);
+            return;
+        }
+        if (current == null) {
+            unavailable("System.native_heap_info is only available with glibc");
+            return;
+        }
+        if (this.trims == null) {
+            addMeters();
+        }
+        if (trimEnabled && current.getFreeBytes() >= trimThreshold && trimAllowed() && trim()) {
+            // values read before trim are outdated
+            this.info = readAfterTrim();
+        } else {
+            this.info = current;
+        }
+    }
+
+    private NativeHeapInfo readAfterTrim() {
+        try {
+            return NativeHeapRetriever.extractFromNativeHeapInfo(
+                    execute(NativeHeapRetriever.NATIVE_HEAP_INFO_COMMAND));
+        } catch (JMException | RuntimeException e) {
+            LOGGER.debug("Native heap info failed after trim", e);
+            return null;
+        }
+    }
+
+    private void unavailable(final String reason) {
+        LOGGER.info("{}, native heap metrics are disabled", reason);
+        close();
+    }
+
+    private boolean trimAllowed() {
+        return !trimmed || System.nanoTime() - lastTrimNanos >= minTrimInterval.toNanos();
+    }
+
+    /**
+     * @return whether native heap was trimmed
+     */
+    private boolean trim() {
+        lastTrimNanos = System.nanoTime();
+        trimmed = true;
+        try {
+            final long bytes = NativeHeapRetriever.extractReclaimedBytes(
+                    execute(NativeHeapRetriever.TRIM_NATIVE_HEAP_COMMAND));
+            trims.increment();
+            if (bytes > 0) {
+                reclaimed.increment(bytes);
+            }
+            LOGGER.debug("Native heap trimmed, {} bytes reclaimed", bytes);
+            return true;
+        } catch (JMException | RuntimeException e) {
+            LOGGER.debug("Native heap trim failed", e);
+            return false;
+        }
+    }
+
+    protected String execute(final String command) throws JMException {
+        return NMTStatsRetriever.execute(command);
+    }
+
+    private void addMeters() {
+        addMeter("arenas", "number of malloc arenas", null, NativeHeapInfo::getArenas);
+        addMeter("system", "bytes obtained from the system by malloc arenas", BaseUnits.BYTES,
+                NativeHeapInfo::getSystemBytes);
+        addMeter("free", "free bytes retained by malloc arenas", BaseUnits.BYTES, NativeHeapInfo::getFreeBytes);
+        addMeter("mmap", "bytes allocated by malloc with mmap", BaseUnits.BYTES, NativeHeapInfo::getMmapBytes);
+        this.trims = Counter.builder("jvm.memory.native.heap.trims")
+                .description("Native heap of the Java virtual machine - number of trims")
+                .register(this.meterRegistry);
+        this.reclaimed = Counter.builder("jvm.memory.native.heap.trim.reclaimed")
+                .description("Native heap of the Java virtual machine - RSS reclaimed by trims")
+                .baseUnit(BaseUnits.BYTES).register(this.meterRegistry);
+    }
+
+    private void addMeter(final String name, final String description, final String baseUnit,
+                          final ToDoubleFunction<NativeHeapInfo> f) {
+        Gauge.builder("jvm.memory.native.heap." + name, this, m -> m.info == null ? -1 : f.applyAsDouble(m.info))
+                .description("Native heap of the Java virtual machine - " + description)
+                .baseUnit(baseUnit).register(this.meterRegistry);
+    }
+
+    /**
+     * @return last native heap info, or null if not yet read or unavailable
+     */
+    public NativeHeapInfo getNativeHeapInfo() {
+        return info;
+    }
+
+}
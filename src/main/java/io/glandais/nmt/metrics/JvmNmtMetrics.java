@@ -6,28 +6,81 @@ import io.glandais.nmt.metrics.retriever.NMTStatsRetriever;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.Meter;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
 import io.micrometer.core.instrument.binder.BaseUnits;
 import io.micrometer.core.instrument.binder.MeterBinder;
 import org.jspecify.annotations.NonNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.JMException;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
+/**
+ * Native Memory Tracking metrics, exposing reserved and committed memory of each NMT category.
+ * <p>
+ * Binding does not collect anything on the caller thread : the first collection runs on a background thread, and
+ * category gauges are registered once it completes. A failed or timed out first collection is retried with backoff
+ * until one succeeds.
+ * </p>
+ * <p>
+ * When NMT is not enabled, or when the DiagnosticCommand MBean is not available (GraalVM native image...), metrics
+ * are disabled after the first collection attempt, and no further collection is made.
+ * </p>
+ */
 public class JvmNmtMetrics implements MeterBinder {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(JvmNmtMetrics.class);
 
+    private static final String STALENESS_METER = "jvm.memory.nmt.staleness";
+
+    private static final long MIN_INIT_BACKOFF_MILLIS = 100L;
+
     private MeterRegistry meterRegistry;
 
     private final Map<String, List<Meter>> meters;
 
     private final Duration cacheDuration;
 
+    private final Duration timeout;
+
+    private final int failureThreshold;
+
+    private final Duration openDuration;
+
+    // not synchronized, as synchronized pins virtual threads carriers while waiting for a collection
+    private final Lock lock = new ReentrantLock();
+
     private volatile CachedValue cachedValue;
 
+    private volatile long lastSuccessMillis = -1L;
+
+    private volatile boolean disabled;
+
+    private volatile CompletableFuture<Boolean> initialCollection = CompletableFuture.completedFuture(false);
+
+    // following fields are guarded by lock
+
+    private ExecutorService collector;
+
+    private Future<CollectedValue> pendingCollection;
+
+    private int consecutiveFailures;
+
+    private long openUntilMillis;
+
     /**
      * Internal class to hold cached NMT values with expiration timestamp
      */
@@ -45,55 +98,249 @@ public class JvmNmtMetrics implements MeterBinder {
         }
     }
 
+    /**
+     * Collected values with their collection completion time
+     */
+    private static class CollectedValue {
+        final NativeMemoryTrackingValues value;
+        final long completionTimeMillis;
+
+        CollectedValue(final NativeMemoryTrackingValues value) {
+            this.value = value;
+            this.completionTimeMillis = System.currentTimeMillis();
+        }
+    }
+
     public JvmNmtMetrics() {
         this(Duration.ofSeconds(10L));
     }
 
     public JvmNmtMetrics(final Duration cacheDuration) {
+        this(cacheDuration, Duration.ofSeconds(2L), 3, Duration.ofMinutes(1L));
+    }
+
+    /**
+     * @param cacheDuration    duration of cached values
+     * @param timeout          maximum duration of a collection, last good values are used afterwards
+     * @param failureThreshold number of consecutive failed or timed out collections opening the circuit breaker
+     * @param openDuration     duration without any new call once the circuit breaker is open
+     */
+    public JvmNmtMetrics(final Duration cacheDuration, final Duration timeout, final int failureThreshold,
+                         final Duration openDuration) {
         super();
         this.meters = Collections.synchronizedMap(new TreeMap<>());
         this.cacheDuration = cacheDuration;
+        this.timeout = timeout;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
     }
 
     @Override
     public void bindTo(final @NonNull MeterRegistry registry) {
         this.meterRegistry = registry;
 
-        // first call for init
-        final NativeMemoryTrackingValues initialSummary = this.getVmNativeMemorySummary();
-        LOGGER.debug("Initial summary : {}", initialSummary);
+        TimeGauge.builder(STALENESS_METER, this::getStalenessSeconds, TimeUnit.SECONDS)
+                .description("Native Memory Tracking of the Java virtual machine - age of last successful collection")
+                .register(registry);
+
+        // first call for init, out of the startup critical path
+        this.initialCollection = CompletableFuture.supplyAsync(this::initialize, runnable -> {
+            final Thread thread = new Thread(runnable, "nmt-metrics-init");
+            thread.setDaemon(true);
+            thread.start();
+        });
+    }
+
+    /**
+     * Collects until a first collection succeeds or metrics are disabled, backing off between attempts.
+     *
+     * @return true if a collection succeeded
+     */
+    private boolean initialize() {
+        long backoffMillis = Math.max(MIN_INIT_BACKOFF_MILLIS, timeout.toMillis());
+        final long maxBackoffMillis = Math.max(backoffMillis, openDuration.toMillis());
+        while (!disabled && lastSuccessMillis < 0) {
+            if (tryLock()) {
+                try {
+                    // forced, as a failed attempt caches an empty value
+                    if (!disabled && lastSuccessMillis < 0) {
+                        refresh();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+            if (disabled || lastSuccessMillis >= 0) {
+                break;
+            }
+            LOGGER.debug("Initial NMT collection failed, retrying in {}ms", backoffMillis);
+            try {
+                Thread.sleep(backoffMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            backoffMillis = Math.min(2 * backoffMillis, maxBackoffMillis);
+        }
+        LOGGER.debug("Initial summary : {}", this.cachedValue == null ? null : this.cachedValue.value);
+        return lastSuccessMillis >= 0;
+    }
+
+    /**
+     * Waits for the initial collection started by {@link #bindTo(MeterRegistry)}.
+     *
+     * @param maxWait maximum duration to wait
+     * @return true if a collection succeeded, false if none succeeded yet or if metrics are disabled
+     */
+    public boolean awaitInitialCollection(final Duration maxWait) {
+        try {
+            return initialCollection.get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            return lastSuccessMillis >= 0;
+        }
+    }
+
+    /**
+     * @return true if NMT or the DiagnosticCommand MBean is not available, no collection being made anymore
+     */
+    public boolean isDisabled() {
+        return disabled;
     }
 
     protected NativeMemoryTrackingValues getVmNativeMemorySummary() {
-        CachedValue cached = this.cachedValue;
+        if (disabled) {
+            return null;
+        }
+        final CachedValue cached = this.cachedValue;
+
+        // Check if cache is empty or expired (without locking for performance)
+        if (cached != null && !cached.isExpired()) {
+            return cached.value;
+        }
+        if (cached != null) {
+            // Another thread is refreshing : serve last good value instead of waiting
+            if (!lock.tryLock()) {
+                return cached.value;
+            }
+        } else if (!tryLock()) {
+            return null;
+        }
+        try {
+            // Double-check after acquiring lock
+            if (!disabled && (this.cachedValue == null || this.cachedValue.isExpired())) {
+                refresh();
+            }
+            return this.cachedValue == null ? null : this.cachedValue.value;
+        } finally {
+            lock.unlock();
+        }
+    }
 
-        // Check if cache is empty or expired (without synchronization for performance)
-        if (cached == null || cached.isExpired()) {
-            synchronized (this) {
-                // Double-check after acquiring lock
-                cached = this.cachedValue;
-                if (cached == null || cached.isExpired()) {
-                    // Compute new value
-                    final NativeMemoryTrackingValues value = computeVmNativeMemorySummary();
+    private boolean tryLock() {
+        try {
+            return lock.tryLock(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
 
-                    // Calculate expiry time
-                    final long expiryTime = System.currentTimeMillis() + cacheDuration.toMillis();
+    private void refresh() {
+        final long now = System.currentTimeMillis();
+        final long expiryTime = now + cacheDuration.toMillis();
+        final NativeMemoryTrackingValues lastGood = this.cachedValue == null ? null : this.cachedValue.value;
 
-                    // Update cache
-                    this.cachedValue = new CachedValue(value, expiryTime);
+        // the circuit breaker only prevents new calls : a timed out call that completed since is still harvested
+        if (now < openUntilMillis && (pendingCollection == null || !pendingCollection.isDone())) {
+            LOGGER.debug("NMT collection circuit breaker is open, serving last good values");
+            this.cachedValue = new CachedValue(lastGood, expiryTime);
+            return;
+        }
 
-                    return value;
-                }
+        try {
+            final CollectedValue collected = collect();
+            final NativeMemoryTrackingValues value = collected.value;
+            if (lastGood == null && NMTStatsRetriever.isNotEnabled(value)) {
+                disable("Native memory tracking is not enabled (-XX:NativeMemoryTracking=summary)");
+                return;
+            }
+            updateMeters(value);
+            consecutiveFailures = 0;
+            openUntilMillis = 0L;
+            // a timed out collection may be harvested later : staleness is based on its own completion time
+            lastSuccessMillis = collected.completionTimeMillis;
+            this.cachedValue = new CachedValue(value, expiryTime);
+        } catch (TimeoutException | ExecutionException | JMException | RuntimeException | LinkageError e) {
+            if (lastGood == null && NMTStatsRetriever.isUnsupported(e)) {
+                disable("DiagnosticCommand MBean is not available (" + e + ")");
+                return;
+            }
+            consecutiveFailures++;
+            if (consecutiveFailures >= failureThreshold) {
+                openUntilMillis = System.currentTimeMillis() + openDuration.toMillis();
+                LOGGER.warn("NMT collection failed {} times, backing off for {}", consecutiveFailures,
+                        openDuration, e);
+            } else {
+                LOGGER.debug("NMT collection failed, serving last good values", e);
+            }
+            this.cachedValue = new CachedValue(lastGood, expiryTime);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.cachedValue = new CachedValue(lastGood, expiryTime);
+        }
+    }
+
+    private void disable(final String reason) {
+        LOGGER.info("{}, NMT metrics are disabled", reason);
+        disabled = true;
+        this.cachedValue = null;
+        if (collector != null) {
+            collector.shutdown();
+            collector = null;
+        }
+    }
+
+    private CollectedValue collect()
+            throws InterruptedException, ExecutionException, TimeoutException, JMException {
+        if (timeout.isZero() || timeout.isNegative()) {
+            return new CollectedValue(computeVmNativeMemorySummary());
+        }
+        if (pendingCollection == null) {
+            if (collector == null) {
+                final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 1L, TimeUnit.MINUTES,
+                        new LinkedBlockingQueue<>(), runnable -> {
+                            final Thread thread = new Thread(runnable, "nmt-metrics-collector");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+                executor.allowCoreThreadTimeOut(true);
+                collector = executor;
             }
+            pendingCollection = collector.submit(() -> new CollectedValue(computeVmNativeMemorySummary()));
         }
+        try {
+            return pendingCollection.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } finally {
+            // a timed out collection is still running on the collector thread, it is awaited again on next refresh
+            if (pendingCollection.isDone()) {
+                pendingCollection = null;
+            }
+        }
+    }
 
-        return cached.value;
+    protected NativeMemoryTrackingValues computeVmNativeMemorySummary() throws JMException {
+        return NMTStatsRetriever.executeSummary();
     }
 
-    protected NativeMemoryTrackingValues computeVmNativeMemorySummary() {
-        final NativeMemoryTrackingValues result = NMTStatsRetriever.retrieveNativeMemoryTrackingValues();
-        updateMeters(result);
-        return result;
+    protected double getStalenessSeconds() {
+        final long lastSuccess = this.lastSuccessMillis;
+        if (lastSuccess < 0) {
+            return -1;
+        }
+        return (System.currentTimeMillis() - lastSuccess) / 1000.0;
     }
 
     protected void updateMeters(final NativeMemoryTrackingValues result) {
@@ -0,0 +1,229 @@
+package io.glandais.nmt.metrics;
+
+import io.glandais.nmt.metrics.bean.NativeMemoryTrackingKind;
+import io.glandais.nmt.metrics.bean.NativeMemoryTrackingValues;
+import io.glandais.nmt.metrics.retriever.NMTStatsRetriever;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.jspecify.annotations.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * High frequency NMT sampler, catching short native memory spikes (GC, compiler bursts...) between two scrapes.
+ * <p>
+ * Committed memory is sampled on a background thread, and the max/min values of each category since the previous
+ * read are exposed as {@code jvm.memory.nmt.committed.max} and {@code jvm.memory.nmt.committed.min} gauges. Reading
+ * a gauge resets its window, so that each scrape gets the extremes of its own scrape window.
+ * </p>
+ * <p>
+ * Each sample is a DiagnosticCommand call : the sampling interval is stretched so that the sampler thread does not
+ * use more than the CPU budget (fraction of a single CPU).
+ * </p>
+ * <p>
+ * When NMT is not enabled, or when the DiagnosticCommand MBean is not available, sampling stops after the first
+ * sample.
+ * </p>
+ */
+public class JvmNmtSampler implements MeterBinder, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JvmNmtSampler.class);
+
+    private final Duration interval;
+
+    private final double cpuBudget;
+
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+    private MeterRegistry meterRegistry;
+
+    private ScheduledExecutorService executor;
+
+    private volatile long lastCpuTimeNanos;
+
+    private volatile boolean disabled;
+
+    /**
+     * Max and min committed values of a category since last read of their gauge
+     */
+    private static class Window {
+        final AtomicLong last = new AtomicLong();
+        final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+        final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+
+        void add(final long value) {
+            last.set(value);
+            max.accumulateAndGet(value, Math::max);
+            min.accumulateAndGet(value, Math::min);
+        }
+
+        // next window starts at current level
+        long readMax() {
+            final long value = max.getAndSet(last.get());
+            return value == Long.MIN_VALUE ? last.get() : value;
+        }
+
+        long readMin() {
+            final long value = min.getAndSet(last.get());
+            return value == Long.MAX_VALUE ? last.get() : value;
+        }
+    }
+
+    public JvmNmtSampler() {
+        this(Duration.ofSeconds(1L), 0.01);
+    }
+
+    /**
+     * @param interval  minimum interval between two samples
+     * @param cpuBudget maximum fraction of a CPU used by sampling (0.01 being 1% of a CPU)
+     * @throws IllegalArgumentException if cpuBudget is not positive
+     */
+    public JvmNmtSampler(final Duration interval, final double cpuBudget) {
+        super();
+        if (!(cpuBudget > 0)) {
+            throw new IllegalArgumentException("CPU budget must be positive : " + cpuBudget);
+        }
+        this.interval = interval;
+        this.cpuBudget = cpuBudget;
+    }
+
+    /**
+     * Binds the sampler to a registry, starting sampling. Binding again stops sampling for the previous registry.
+     */
+    @Override
+    public synchronized void bindTo(final @NonNull MeterRegistry registry) {
+        close();
+        this.windows.clear();
+        this.disabled = false;
+        this.meterRegistry = registry;
+        final ScheduledThreadPoolExecutor scheduledExecutor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "nmt-metrics-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduledExecutor.setRemoveOnCancelPolicy(true);
+        this.executor = scheduledExecutor;
+        scheduledExecutor.execute(() -> sampleAndReschedule(scheduledExecutor));
+    }
+
+    @Override
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void sampleAndReschedule(final ScheduledExecutorService scheduler) {
+        final long start = System.nanoTime();
+        final long startCpu = getCurrentThreadCpuTime();
+        try {
+            final NativeMemoryTrackingValues values = computeVmNativeMemorySummary();
+            if (windows.isEmpty() && NMTStatsRetriever.isNotEnabled(values)) {
+                disable(scheduler, "Native memory tracking is not enabled (-XX:NativeMemoryTracking=summary)");
+                return;
+            }
+            record(values);
+        } catch (JMException | RuntimeException | LinkageError e) {
+            if (windows.isEmpty() && NMTStatsRetriever.isUnsupported(e)) {
+                disable(scheduler, "DiagnosticCommand MBean is not available (" + e + ")");
+                return;
+            }
+            LOGGER.debug("NMT sampling failed", e);
+        }
+        final long cpu = startCpu < 0 ? System.nanoTime() - start : getCurrentThreadCpuTime() - startCpu;
+        this.lastCpuTimeNanos = cpu;
+        final long delay = Math.max(interval.toNanos(), (long) (cpu / cpuBudget) - (System.nanoTime() - start));
+        try {
+            scheduler.schedule(() -> sampleAndReschedule(scheduler), delay, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("NMT sampler is closed");
+        }
+    }
+
+    private void disable(final ScheduledExecutorService scheduler, final String reason) {
+        LOGGER.info("{}, NMT sampling is disabled", reason);
+        disabled = true;
+        scheduler.shutdown();
+    }
+
+    /**
+     * @return true if NMT or the DiagnosticCommand MBean is not available, no sample being taken anymore
+     */
+    public boolean isDisabled() {
+        return disabled;
+    }
+
+    private static long getCurrentThreadCpuTime() {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean.isCurrentThreadCpuTimeSupported()) {
+            return threadMXBean.getCurrentThreadCpuTime();
+        }
+        return -1L;
+    }
+
+    protected NativeMemoryTrackingValues computeVmNativeMemorySummary() throws JMException {
+        return NMTStatsRetriever.executeSummary();
+    }
+
+    /**
+     * Records a sample, registering gauges of new categories.
+     *
+     * @param values sampled values, in KB
+     */
+    protected void record(final NativeMemoryTrackingValues values) {
+        final Map<String, Long> committed = values.get(NativeMemoryTrackingKind.COMMITTED);
+        if (committed == null) {
+            return;
+        }
+        committed.forEach((category, kb) -> {
+            final Window window = windows.get(category);
+            if (window != null) {
+                window.add(1024 * kb);
+            } else {
+                // gauges are registered once the window holds a first sample
+                final Window newWindow = new Window();
+                newWindow.add(1024 * kb);
+                if (windows.putIfAbsent(category, newWindow) == null) {
+                    addMeters(category, newWindow);
+                } else {
+                    windows.get(category).add(1024 * kb);
+                }
+            }
+        });
+    }
+
+    private void addMeters(final String nmtType, final Window window) {
+        addMeter("max", nmtType, window::readMax);
+        addMeter("min", nmtType, window::readMin);
+    }
+
+    private void addMeter(final String stat, final String nmtType, final Supplier<Number> f) {
+        Gauge.builder("jvm.memory.nmt.committed." + stat, f).tag("category", nmtType)
+                .description("Native Memory Tracking of the Java virtual machine - " + stat
+                        + " committed memory since last read")
+                .baseUnit(BaseUnits.BYTES).register(this.meterRegistry);
+    }
+
+    /**
+     * @return CPU time of the last sample, in nanoseconds
+     */
+    public long getLastCpuTimeNanos() {
+        return lastCpuTimeNanos;
+    }
+
+}
@@ -0,0 +1,273 @@
+package io.glandais.nmt.metrics.analyzer;
+
+import io.glandais.nmt.metrics.bean.NativeMemoryTrackingKind;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Offline analyzer of archived {@code jcmd <pid> VM.native_memory summary} outputs.
+ * <p>
+ * Walks directories, reads plain text and gzip files in parallel and writes into the output directory :
+ * </p>
+ * <ul>
+ *   <li>{@value #TIMESERIES_FILE} : one row per dump and category, in completion order</li>
+ *   <li>{@value #GROWTH_FILE} : committed memory growth ranking of every (source, category) series</li>
+ *   <li>{@value #SUMMARY_FILE} : counters, per category aggregates and top growing series</li>
+ * </ul>
+ * <p>
+ * The source of a dump is the directory of its file relative to the analyzed directory (usually one directory per
+ * pod), or the file name for files at its root. The timestamp of a dump is read from its file name
+ * ({@code 2024-01-31T12-00-00}, {@code 20240131-120000} or epoch seconds/millis, UTC) and defaults to the file last
+ * modification time.
+ * </p>
+ * <p>
+ * Usage : {@code java -cp nmt-metrics.jar:slf4j-api.jar io.glandais.nmt.metrics.analyzer.NMTArchiveAnalyzer
+ * [--output=<dir>] [--threads=<n>] [--top=<n>] <file-or-directory>...}
+ * </p>
+ */
+public class NMTArchiveAnalyzer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NMTArchiveAnalyzer.class);
+
+    public static final String TIMESERIES_FILE = "timeseries.csv";
+
+    public static final String GROWTH_FILE = "growth.csv";
+
+    public static final String SUMMARY_FILE = "summary.json";
+
+    // date and time must be separated, so that any run of 14 digits (pod hash, pid...) is not taken for a date
+    private static final Pattern DATE_TIME_PATTERN = Pattern
+            .compile("(?<!\\d)(\\d{4})-?(\\d{2})-?(\\d{2})[T_-](\\d{2})[:-]?(\\d{2})[:-]?(\\d{2})(?!\\d)");
+
+    private static final Pattern EPOCH_PATTERN = Pattern.compile("(?<!\\d)(\\d{13}|\\d{10})(?!\\d)");
+
+    private final Path outputDirectory;
+
+    private final int threads;
+
+    private final int top;
+
+    public NMTArchiveAnalyzer(final Path outputDirectory, final int threads, final int top) {
+        super();
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be positive : " + threads);
+        }
+        if (top <= 0) {
+            throw new IllegalArgumentException("top must be positive : " + top);
+        }
+        this.outputDirectory = outputDirectory;
+        this.threads = threads;
+        this.top = top;
+    }
+
+    public static void main(final String[] args) throws IOException {
+        Path output = Paths.get("nmt-report");
+        int threads = Runtime.getRuntime().availableProcessors();
+        int top = 20;
+        final List<Path> inputs = new ArrayList<>();
+        for (final String arg : args) {
+            if (arg.startsWith("--output=")) {
+                output = Paths.get(arg.substring("--output=".length()));
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else if (arg.startsWith("--top=")) {
+                top = Integer.parseInt(arg.substring("--top=".length()));
+            } else {
+                inputs.add(Paths.get(arg));
+            }
+        }
+        if (inputs.isEmpty() || threads <= 0 || top <= 0) {
+            System.err.println("Usage: NMTArchiveAnalyzer [--output=<dir>] [--threads=<n>] [--top=<n>]"
+                    + " <file-or-directory>...");
+            System.exit(2);
+        }
+
+        final NMTArchiveReport report = new NMTArchiveAnalyzer(output, threads, top).analyze(inputs);
+        System.out.printf("%d files, %d dumps, %d skipped files, %d failed files, %d series, report in %s%n",
+                report.getFiles(), report.getDumps(), report.getSkippedFiles(), report.getFailedFiles(),
+                report.getRanking().size(), output.toAbsolutePath());
+    }
+
+    /**
+     * Analyzes files and directories, and writes reports into output directory.
+     *
+     * @param inputs files or directories to analyze
+     * @return analysis report
+     * @throws IOException if reports can not be written, inputs that can not be listed being counted as failed
+     */
+    public NMTArchiveReport analyze(final List<Path> inputs) throws IOException {
+        Files.createDirectories(outputDirectory);
+
+        final ConcurrentMap<String, NMTSeriesStats> series = new ConcurrentHashMap<>();
+        final AtomicLong files = new AtomicLong();
+        final AtomicLong dumps = new AtomicLong();
+        final AtomicLong skippedFiles = new AtomicLong();
+        final AtomicLong failedFiles = new AtomicLong();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        // bounds the number of pending tasks, so that huge archives are not listed in memory
+        final Semaphore pending = new Semaphore(threads * 2);
+        try (BufferedWriter timeseries = Files.newBufferedWriter(outputDirectory.resolve(TIMESERIES_FILE),
+                StandardCharsets.UTF_8)) {
+            timeseries.write("source,timestamp,file,dump,category,reserved_bytes,committed_bytes\n");
+            for (final Path input : inputs) {
+                final Path root = Files.isDirectory(input) ? input : input.toAbsolutePath().getParent();
+                Files.walkFileTree(input, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs)
+                            throws IOException {
+                        if (!Files.isRegularFile(file)) {
+                            return FileVisitResult.CONTINUE;
+                        }
+                        try {
+                            pending.acquire();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new InterruptedIOException("Analysis interrupted");
+                        }
+                        executor.execute(() -> {
+                            try {
+                                files.incrementAndGet();
+                                final int count = analyzeFile(root, file, series, timeseries);
+                                if (count == 0) {
+                                    skippedFiles.incrementAndGet();
+                                }
+                                dumps.addAndGet(count);
+                            } catch (IOException | RuntimeException e) {
+                                LOGGER.warn("Failed to analyze {}", file, e);
+                                failedFiles.incrementAndGet();
+                            } finally {
+                                pending.release();
+                            }
+                        });
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    // an unreadable directory or file does not abort the whole analysis
+                    @Override
+                    public FileVisitResult visitFileFailed(final Path file, final IOException e) {
+                        LOGGER.warn("Failed to list {}", file, e);
+                        failedFiles.incrementAndGet();
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult postVisitDirectory(final Path dir, final IOException e) {
+                        if (e != null) {
+                            LOGGER.warn("Failed to list {}", dir, e);
+                            failedFiles.incrementAndGet();
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Analysis interrupted");
+        } finally {
+            executor.shutdownNow();
+        }
+
+        final NMTArchiveReport report = new NMTArchiveReport(files.get(), dumps.get(), skippedFiles.get(),
+                failedFiles.get(), new ArrayList<>(series.values()));
+        report.writeGrowthCsv(outputDirectory.resolve(GROWTH_FILE));
+        report.writeSummaryJson(outputDirectory.resolve(SUMMARY_FILE), top);
+        return report;
+    }
+
+    private int analyzeFile(final Path root, final Path file, final ConcurrentMap<String, NMTSeriesStats> series,
+                            final BufferedWriter timeseries) throws IOException {
+        final String source = getSource(root, file);
+        final Instant timestamp = getTimestamp(file);
+        final String fileName = NMTArchiveReport.csv(file.getFileName().toString());
+        final long[] sequence = {0L};
+        return NMTDumpReader.read(file, values -> {
+            final long dump = sequence[0]++;
+            final StringBuilder rows = new StringBuilder();
+            final Map<String, Long> reserved = values.get(NativeMemoryTrackingKind.RESERVED);
+            for (final Map.Entry<String, Long> entry : values.get(NativeMemoryTrackingKind.COMMITTED).entrySet()) {
+                final String category = entry.getKey();
+                final long committedBytes = 1024 * entry.getValue();
+                final long reservedBytes = 1024 * reserved.getOrDefault(category, 0L);
+                series.computeIfAbsent(source + '\u0000' + category, k -> new NMTSeriesStats(source, category))
+                        .add(timestamp, dump, committedBytes);
+                rows.append(NMTArchiveReport.csv(source)).append(',').append(timestamp).append(',')
+                        .append(fileName).append(',').append(dump).append(',')
+                        .append(NMTArchiveReport.csv(category)).append(',').append(reservedBytes).append(',')
+                        .append(committedBytes).append('\n');
+            }
+            try {
+                synchronized (timeseries) {
+                    timeseries.append(rows);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    static String getSource(final Path root, final Path file) {
+        final Path parent = file.toAbsolutePath().getParent();
+        final Path relative = root.toAbsolutePath().relativize(parent);
+        if (relative.toString().isEmpty()) {
+            String name = file.getFileName().toString();
+            if (name.endsWith(".gz")) {
+                name = name.substring(0, name.length() - ".gz".length());
+            }
+            final int extension = name.lastIndexOf('.');
+            return extension > 0 ? name.substring(0, extension) : name;
+        }
+        return relative.toString().replace('\\', '/');
+    }
+
+    static Instant getTimestamp(final Path file) throws IOException {
+        final String name = file.getFileName().toString();
+        final Matcher dateTime = DATE_TIME_PATTERN.matcher(name);
+        if (dateTime.find()) {
+            try {
+                return LocalDateTime.parse(dateTime.group(1) + "-" + dateTime.group(2) + "-" + dateTime.group(3)
+                                + "T" + dateTime.group(4) + ":" + dateTime.group(5) + ":" + dateTime.group(6))
+                        .toInstant(ZoneOffset.UTC);
+            } catch (DateTimeParseException e) {
+                LOGGER.debug("Invalid date in file name {}", name);
+            }
+        }
+        final Matcher epoch = EPOCH_PATTERN.matcher(name);
+        if (epoch.find()) {
+            final long value = Long.parseLong(epoch.group(1));
+            return epoch.group(1).length() == 13 ? Instant.ofEpochMilli(value) : Instant.ofEpochSecond(value);
+        }
+        return Files.getLastModifiedTime(file).toInstant();
+    }
+
+}
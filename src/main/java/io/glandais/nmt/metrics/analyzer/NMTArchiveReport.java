@@ -0,0 +1,177 @@
+package io.glandais.nmt.metrics.analyzer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Result of an archive analysis : counters and committed memory growth ranking of every (source, category) series.
+ */
+public class NMTArchiveReport {
+
+    private final long files;
+
+    private final long dumps;
+
+    private final long skippedFiles;
+
+    private final long failedFiles;
+
+    private final List<NMTSeriesStats> ranking;
+
+    public NMTArchiveReport(final long files, final long dumps, final long skippedFiles, final long failedFiles,
+                            final List<NMTSeriesStats> series) {
+        super();
+        this.files = files;
+        this.dumps = dumps;
+        this.skippedFiles = skippedFiles;
+        this.failedFiles = failedFiles;
+        this.ranking = new ArrayList<>(series);
+        this.ranking.sort(Comparator.comparingLong(NMTSeriesStats::getGrowth).reversed()
+                .thenComparing(NMTSeriesStats::getSource)
+                .thenComparing(NMTSeriesStats::getCategory));
+    }
+
+    /**
+     * @return number of files read
+     */
+    public long getFiles() {
+        return files;
+    }
+
+    /**
+     * @return number of NMT summary dumps found
+     */
+    public long getDumps() {
+        return dumps;
+    }
+
+    /**
+     * @return number of files without any NMT summary dump
+     */
+    public long getSkippedFiles() {
+        return skippedFiles;
+    }
+
+    /**
+     * @return number of files which could not be read
+     */
+    public long getFailedFiles() {
+        return failedFiles;
+    }
+
+    /**
+     * @return series sorted by decreasing committed memory growth
+     */
+    public List<NMTSeriesStats> getRanking() {
+        return ranking;
+    }
+
+    /**
+     * Writes the growth ranking of all series as CSV.
+     *
+     * @param file target file
+     * @throws IOException if file can not be written
+     */
+    public void writeGrowthCsv(final Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("rank,source,category,samples,first_timestamp,last_timestamp,first_committed_bytes,"
+                    + "last_committed_bytes,growth_bytes,min_committed_bytes,max_committed_bytes\n");
+            int rank = 1;
+            for (final NMTSeriesStats stats : ranking) {
+                writer.write(rank++ + "," + csv(stats.getSource()) + "," + csv(stats.getCategory()) + ","
+                        + stats.getSamples() + "," + stats.getFirstTimestamp() + "," + stats.getLastTimestamp() + ","
+                        + stats.getFirstCommitted() + "," + stats.getLastCommitted() + "," + stats.getGrowth() + ","
+                        + stats.getMinCommitted() + "," + stats.getMaxCommitted() + "\n");
+            }
+        }
+    }
+
+    /**
+     * Writes a JSON summary : counters, per category aggregates and top growing series.
+     *
+     * @param file target file
+     * @param top  number of top growing series to include
+     * @throws IOException if file can not be written
+     */
+    public void writeSummaryJson(final Path file, final int top) throws IOException {
+        final Map<String, long[]> categories = new TreeMap<>();
+        for (final NMTSeriesStats stats : ranking) {
+            // sources, sum of last committed, max growth
+            final long[] aggregate = categories.computeIfAbsent(stats.getCategory(),
+                    c -> new long[]{0L, 0L, Long.MIN_VALUE});
+            aggregate[0]++;
+            aggregate[1] += stats.getLastCommitted();
+            aggregate[2] = Math.max(aggregate[2], stats.getGrowth());
+        }
+
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("{\n");
+            writer.write("  \"files\": " + files + ",\n");
+            writer.write("  \"dumps\": " + dumps + ",\n");
+            writer.write("  \"skippedFiles\": " + skippedFiles + ",\n");
+            writer.write("  \"failedFiles\": " + failedFiles + ",\n");
+            writer.write("  \"series\": " + ranking.size() + ",\n");
+            writer.write("  \"categories\": [");
+            String separator = "\n";
+            for (final Map.Entry<String, long[]> entry : categories.entrySet()) {
+                final long[] aggregate = entry.getValue();
+                writer.write(separator + "    {\"category\": " + json(entry.getKey())
+                        + ", \"sources\": " + aggregate[0]
+                        + ", \"lastCommittedBytes\": " + aggregate[1]
+                        + ", \"maxGrowthBytes\": " + aggregate[2] + "}");
+                separator = ",\n";
+            }
+            writer.write("\n  ],\n");
+            writer.write("  \"topGrowth\": [");
+            separator = "\n";
+            for (final NMTSeriesStats stats : ranking.subList(0, Math.min(top, ranking.size()))) {
+                writer.write(separator + "    {\"source\": " + json(stats.getSource())
+                        + ", \"category\": " + json(stats.getCategory())
+                        + ", \"samples\": " + stats.getSamples()
+                        + ", \"firstTimestamp\": " + json(stats.getFirstTimestamp())
+                        + ", \"lastTimestamp\": " + json(stats.getLastTimestamp())
+                        + ", \"firstCommittedBytes\": " + stats.getFirstCommitted()
+                        + ", \"lastCommittedBytes\": " + stats.getLastCommitted()
+                        + ", \"growthBytes\": " + stats.getGrowth() + "}");
+                separator = ",\n";
+            }
+            writer.write("\n  ]\n");
+            writer.write("}\n");
+        }
+    }
+
+    static String csv(final String value) {
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
+    }
+
+    private static String json(final Instant value) {
+        return json(String.valueOf(value));
+    }
+
+    private static String json(final String value) {
+        final StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+        for (final char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+}
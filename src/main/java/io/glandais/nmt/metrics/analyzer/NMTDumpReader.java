@@ -0,0 +1,101 @@
+package io.glandais.nmt.metrics.analyzer;
+
+import io.glandais.nmt.metrics.bean.NativeMemoryTrackingKind;
+import io.glandais.nmt.metrics.bean.NativeMemoryTrackingValues;
+import io.glandais.nmt.metrics.retriever.NMTStatsRetriever;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streams NMT summary dumps out of an archived file, plain text or gzip compressed.
+ * <p>
+ * A file may contain several {@code jcmd <pid> VM.native_memory summary} outputs appended one after the other,
+ * each of them starting with a {@code Native Memory Tracking:} header. Files are read line by line, so that only a
+ * single dump is held in memory at a time whatever the file size.
+ * </p>
+ */
+public class NMTDumpReader {
+
+    private static final String DUMP_HEADER = "Native Memory Tracking:";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private NMTDumpReader() {
+        super();
+    }
+
+    /**
+     * Reads all dumps of a file.
+     *
+     * @param file     file to read, gzip compressed if its name ends with {@code .gz}
+     * @param consumer consumer of dumps values (in KB), called in file order
+     * @return number of dumps found in file
+     * @throws IOException if file can not be read
+     */
+    public static int read(final Path file, final Consumer<NativeMemoryTrackingValues> consumer) throws IOException {
+        try (InputStream inputStream = open(file);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8),
+                     BUFFER_SIZE)) {
+            return read(reader, consumer);
+        }
+    }
+
+    /**
+     * Reads all dumps from a reader.
+     *
+     * @param reader   reader on NMT outputs
+     * @param consumer consumer of dumps values (in KB), called in reading order
+     * @return number of dumps found
+     * @throws IOException if reader fails
+     */
+    public static int read(final BufferedReader reader, final Consumer<NativeMemoryTrackingValues> consumer)
+            throws IOException {
+        int count = 0;
+        NativeMemoryTrackingValues current = new NativeMemoryTrackingValues();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.trim().equals(DUMP_HEADER)) {
+                if (hasValues(current)) {
+                    consumer.accept(current);
+                    count++;
+                }
+                current = new NativeMemoryTrackingValues();
+            } else {
+                NMTStatsRetriever.extractFromNmtLine(current, line);
+            }
+        }
+        if (hasValues(current)) {
+            consumer.accept(current);
+            count++;
+        }
+        return count;
+    }
+
+    private static boolean hasValues(final NativeMemoryTrackingValues values) {
+        final Map<String, Long> committed = values.get(NativeMemoryTrackingKind.COMMITTED);
+        return committed != null && !committed.isEmpty();
+    }
+
+    private static InputStream open(final Path file) throws IOException {
+        final InputStream inputStream = Files.newInputStream(file);
+        if (file.getFileName().toString().endsWith(".gz")) {
+            try {
+                return new GZIPInputStream(inputStream, BUFFER_SIZE);
+            } catch (IOException e) {
+                inputStream.close();
+                throw e;
+            }
+        }
+        return inputStream;
+    }
+
+}
@@ -0,0 +1,114 @@
+package io.glandais.nmt.metrics.analyzer;
+
+import java.time.Instant;
+
+/**
+ * Aggregated statistics of the committed memory of a NMT category for a single source (pod, host...).
+ * <p>
+ * Only first, last, min and max values are kept, so memory usage does not depend on the number of samples.
+ * Samples can be added in any order, first and last samples are selected by timestamp.
+ * </p>
+ */
+public class NMTSeriesStats {
+
+    private final String source;
+
+    private final String category;
+
+    private long samples;
+
+    private Instant firstTimestamp;
+
+    private long firstSequence;
+
+    private long firstCommitted;
+
+    private Instant lastTimestamp;
+
+    private long lastSequence;
+
+    private long lastCommitted;
+
+    private long minCommitted = Long.MAX_VALUE;
+
+    private long maxCommitted = Long.MIN_VALUE;
+
+    public NMTSeriesStats(final String source, final String category) {
+        super();
+        this.source = source;
+        this.category = category;
+    }
+
+    /**
+     * Adds a sample.
+     *
+     * @param timestamp timestamp of the dump
+     * @param sequence  index of the dump in its file, to order dumps sharing the same timestamp
+     * @param committed committed memory in bytes
+     */
+    public synchronized void add(final Instant timestamp, final long sequence, final long committed) {
+        samples++;
+        if (firstTimestamp == null || isBefore(timestamp, sequence, firstTimestamp, firstSequence)) {
+            firstTimestamp = timestamp;
+            firstSequence = sequence;
+            firstCommitted = committed;
+        }
+        if (lastTimestamp == null || isBefore(lastTimestamp, lastSequence, timestamp, sequence)) {
+            lastTimestamp = timestamp;
+            lastSequence = sequence;
+            lastCommitted = committed;
+        }
+        minCommitted = Math.min(minCommitted, committed);
+        maxCommitted = Math.max(maxCommitted, committed);
+    }
+
+    private static boolean isBefore(final Instant timestamp, final long sequence, final Instant otherTimestamp,
+                                    final long otherSequence) {
+        final int comparison = timestamp.compareTo(otherTimestamp);
+        return comparison < 0 || (comparison == 0 && sequence < otherSequence);
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public synchronized long getSamples() {
+        return samples;
+    }
+
+    public synchronized Instant getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    public synchronized long getFirstCommitted() {
+        return firstCommitted;
+    }
+
+    public synchronized Instant getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    public synchronized long getLastCommitted() {
+        return lastCommitted;
+    }
+
+    public synchronized long getMinCommitted() {
+        return minCommitted;
+    }
+
+    public synchronized long getMaxCommitted() {
+        return maxCommitted;
+    }
+
+    /**
+     * @return committed memory growth in bytes between first and last samples
+     */
+    public synchronized long getGrowth() {
+        return lastCommitted - firstCommitted;
+    }
+
+}
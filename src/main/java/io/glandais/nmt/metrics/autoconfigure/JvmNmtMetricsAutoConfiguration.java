@@ -1,12 +1,20 @@
 package io.glandais.nmt.metrics.autoconfigure;
 
+import io.glandais.nmt.metrics.JvmNativeHeapMetrics;
 import io.glandais.nmt.metrics.JvmNmtMetrics;
+import io.glandais.nmt.metrics.JvmNmtSampler;
+import io.glandais.nmt.metrics.endpoint.NativeMemoryEndpoint;
 import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
 /**
  * Spring Boot auto-configuration for JVM Native Memory Tracking (NMT) metrics.
@@ -31,24 +39,35 @@ import org.springframework.context.annotation.Bean;
  * <p>
  * <b>Note:</b> The JVM must be started with {@code -XX:NativeMemoryTracking=summary}
  * or {@code -XX:NativeMemoryTracking=detail} for NMT metrics to be available.
- * Without this flag, the metrics will return empty values.
+ * Without this flag, the metrics are disabled after the first collection attempt.
+ * </p>
+ * <p>
+ * Binding is non-blocking : the first collection runs on a background thread. Runtime hints are provided
+ * for Spring AOT and GraalVM native images, where NMT metrics are disabled as the DiagnosticCommand MBean
+ * is not available.
+ * </p>
+ * <p>
+ * When Spring Boot Actuator is present, a {@link NativeMemoryEndpoint} is also registered if the
+ * {@code nativememory} endpoint is available (see {@link NativeMemoryEndpointProperties}).
  * </p>
  *
  * @see JvmNmtMetrics
  * @see JvmNmtMetricsProperties
+ * @see NativeMemoryEndpoint
  */
 @AutoConfiguration
 @ConditionalOnClass({ MeterRegistry.class, JvmNmtMetrics.class })
 @EnableConfigurationProperties(JvmNmtMetricsProperties.class)
+@ImportRuntimeHints(JvmNmtMetricsRuntimeHints.class)
 public class JvmNmtMetricsAutoConfiguration {
 
     /**
      * Creates and configures a {@link JvmNmtMetrics} bean for automatic registration
      * with Micrometer's {@link MeterRegistry}.
      * <p>
-     * The bean is configured with the cache duration specified in
-     * {@link JvmNmtMetricsProperties}. If no custom value is provided,
-     * the default of 10 seconds is used.
+     * The bean is configured with the cache duration, collection timeout and
+     * circuit breaker settings specified in {@link JvmNmtMetricsProperties}.
+     * If no custom value is provided, the default cache duration of 10 seconds is used.
      * </p>
      * <p>
      * This bean will only be created if no other {@link JvmNmtMetrics} bean
@@ -62,7 +81,65 @@ public class JvmNmtMetricsAutoConfiguration {
     @Bean
     @ConditionalOnMissingBean
     public JvmNmtMetrics jvmNmtMetrics(JvmNmtMetricsProperties properties) {
-        return new JvmNmtMetrics(properties.getCacheDuration());
+        return new JvmNmtMetrics(properties.getCacheDuration(), properties.getTimeout(),
+                properties.getFailureThreshold(), properties.getCircuitOpenDuration());
+    }
+
+    /**
+     * Creates a {@link JvmNmtSampler} bean exposing max/min committed memory between two scrapes,
+     * when enabled with {@code management.metrics.nmt.sampler.enabled=true}.
+     *
+     * @param properties the NMT metrics configuration properties
+     * @return a configured {@link JvmNmtSampler} instance
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "management.metrics.nmt.sampler", name = "enabled", havingValue = "true")
+    public JvmNmtSampler jvmNmtSampler(JvmNmtMetricsProperties properties) {
+        return new JvmNmtSampler(properties.getSampler().getInterval(), properties.getSampler().getCpuBudget());
+    }
+
+    /**
+     * Creates a {@link JvmNativeHeapMetrics} bean exposing glibc native heap fragmentation, and trimming native heap
+     * if {@code management.metrics.nmt.native-heap.trim-enabled=true}, when enabled with
+     * {@code management.metrics.nmt.native-heap.enabled=true}.
+     *
+     * @param properties the NMT metrics configuration properties
+     * @return a configured {@link JvmNativeHeapMetrics} instance
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "management.metrics.nmt.native-heap", name = "enabled", havingValue = "true")
+    public JvmNativeHeapMetrics jvmNativeHeapMetrics(JvmNmtMetricsProperties properties) {
+        final JvmNmtMetricsProperties.NativeHeap nativeHeap = properties.getNativeHeap();
+        return new JvmNativeHeapMetrics(nativeHeap.getInterval(), nativeHeap.isTrimEnabled(),
+                nativeHeap.getTrimThreshold().toBytes(), nativeHeap.getTrimMinInterval());
+    }
+
+    /**
+     * Registers the {@link NativeMemoryEndpoint} when Spring Boot Actuator is on the classpath and the endpoint is
+     * available (enabled and exposed).
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(Endpoint.class)
+    @ConditionalOnAvailableEndpoint(NativeMemoryEndpoint.class)
+    @EnableConfigurationProperties(NativeMemoryEndpointProperties.class)
+    static class NativeMemoryEndpointConfiguration {
+
+        /**
+         * Creates the {@link NativeMemoryEndpoint}, configured by {@link NativeMemoryEndpointProperties}.
+         *
+         * @param properties the endpoint configuration properties
+         * @return a configured {@link NativeMemoryEndpoint} instance
+         */
+        @Bean
+        @ConditionalOnMissingBean
+        public NativeMemoryEndpoint nativeMemoryEndpoint(NativeMemoryEndpointProperties properties) {
+            return new NativeMemoryEndpoint(properties.getMinInterval(), properties.getDetailMinInterval(),
+                    properties.isDetailEnabled(), (int) Math.min(Integer.MAX_VALUE,
+                    properties.getMaxResponseSize().toBytes()));
+        }
+
     }
 
 }
@@ -1,6 +1,7 @@
 package io.glandais.nmt.metrics.autoconfigure;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
 
 import java.time.Duration;
 
@@ -26,6 +27,186 @@ public class JvmNmtMetricsProperties {
      */
     private Duration cacheDuration = Duration.ofSeconds(10);
 
+    /**
+     * Maximum duration of a NMT collection.
+     * <p>
+     * The DiagnosticCommand call runs at a safepoint and may be slow on a loaded JVM. Past this timeout,
+     * last good values are served while the call completes in background.
+     * </p>
+     * <p>
+     * Default: 2 seconds
+     * </p>
+     */
+    private Duration timeout = Duration.ofSeconds(2);
+
+    /**
+     * Number of consecutive failed or timed out collections opening the circuit breaker.
+     * <p>
+     * Default: 3
+     * </p>
+     */
+    private int failureThreshold = 3;
+
+    /**
+     * Duration without any collection once the circuit breaker is open.
+     * <p>
+     * Default: 1 minute
+     * </p>
+     */
+    private Duration circuitOpenDuration = Duration.ofMinutes(1);
+
+    /**
+     * High frequency sampler settings.
+     */
+    private final Sampler sampler = new Sampler();
+
+    /**
+     * glibc native heap metrics and trim controller settings.
+     */
+    private final NativeHeap nativeHeap = new NativeHeap();
+
+    /**
+     * High frequency sampler exposing max/min committed memory between two scrapes.
+     */
+    public static class Sampler {
+
+        /**
+         * Whether the sampler is enabled.
+         * <p>
+         * Default: false
+         * </p>
+         */
+        private boolean enabled = false;
+
+        /**
+         * Minimum interval between two samples.
+         * <p>
+         * Default: 1 second
+         * </p>
+         */
+        private Duration interval = Duration.ofSeconds(1);
+
+        /**
+         * Maximum fraction of a CPU used by sampling, the interval is stretched to fit in this budget.
+         * <p>
+         * Default: 0.01 (1% of a CPU)
+         * </p>
+         */
+        private double cpuBudget = 0.01;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getInterval() {
+            return interval;
+        }
+
+        public void setInterval(Duration interval) {
+            this.interval = interval;
+        }
+
+        public double getCpuBudget() {
+            return cpuBudget;
+        }
+
+        public void setCpuBudget(double cpuBudget) {
+            this.cpuBudget = cpuBudget;
+        }
+
+    }
+
+    /**
+     * glibc native heap fragmentation metrics, with an optional automatic trim controller.
+     */
+    public static class NativeHeap {
+
+        /**
+         * Whether native heap metrics are enabled.
+         * <p>
+         * Default: false
+         * </p>
+         */
+        private boolean enabled = false;
+
+        /**
+         * Interval between two native heap info reads.
+         * <p>
+         * Default: 1 minute
+         * </p>
+         */
+        private Duration interval = Duration.ofMinutes(1);
+
+        /**
+         * Whether native heap is trimmed when retained free memory exceeds the trim threshold.
+         * <p>
+         * Default: false
+         * </p>
+         */
+        private boolean trimEnabled = false;
+
+        /**
+         * Free memory retained by malloc arenas triggering a trim.
+         * <p>
+         * Default: 64MB
+         * </p>
+         */
+        private DataSize trimThreshold = DataSize.ofMegabytes(64);
+
+        /**
+         * Minimum interval between two trims.
+         * <p>
+         * Default: 5 minutes
+         * </p>
+         */
+        private Duration trimMinInterval = Duration.ofMinutes(5);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getInterval() {
+            return interval;
+        }
+
+        public void setInterval(Duration interval) {
+            this.interval = interval;
+        }
+
+        public boolean isTrimEnabled() {
+            return trimEnabled;
+        }
+
+        public void setTrimEnabled(boolean trimEnabled) {
+            this.trimEnabled = trimEnabled;
+        }
+
+        public DataSize getTrimThreshold() {
+            return trimThreshold;
+        }
+
+        public void setTrimThreshold(DataSize trimThreshold) {
+            this.trimThreshold = trimThreshold;
+        }
+
+        public Duration getTrimMinInterval() {
+            return trimMinInterval;
+        }
+
+        public void setTrimMinInterval(Duration trimMinInterval) {
+            this.trimMinInterval = trimMinInterval;
+        }
+
+    }
+
     /**
      * Gets the configured cache duration for NMT metrics.
      *
@@ -44,4 +225,76 @@ public class JvmNmtMetricsProperties {
         this.cacheDuration = cacheDuration;
     }
 
+    /**
+     * Gets the maximum duration of a NMT collection.
+     *
+     * @return the collection timeout
+     */
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Sets the maximum duration of a NMT collection.
+     *
+     * @param timeout the collection timeout to set
+     */
+    public void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Gets the number of consecutive failures opening the circuit breaker.
+     *
+     * @return the failure threshold
+     */
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    /**
+     * Sets the number of consecutive failures opening the circuit breaker.
+     *
+     * @param failureThreshold the failure threshold to set
+     */
+    public void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    /**
+     * Gets the duration without any collection once the circuit breaker is open.
+     *
+     * @return the circuit open duration
+     */
+    public Duration getCircuitOpenDuration() {
+        return circuitOpenDuration;
+    }
+
+    /**
+     * Sets the duration without any collection once the circuit breaker is open.
+     *
+     * @param circuitOpenDuration the circuit open duration to set
+     */
+    public void setCircuitOpenDuration(Duration circuitOpenDuration) {
+        this.circuitOpenDuration = circuitOpenDuration;
+    }
+
+    /**
+     * Gets the high frequency sampler settings.
+     *
+     * @return the sampler settings
+     */
+    public Sampler getSampler() {
+        return sampler;
+    }
+
+    /**
+     * Gets the glibc native heap metrics settings.
+     *
+     * @return the native heap settings
+     */
+    public NativeHeap getNativeHeap() {
+        return nativeHeap;
+    }
+
 }
@@ -0,0 +1,33 @@
+package io.glandais.nmt.metrics.autoconfigure;
+
+import io.glandais.nmt.metrics.endpoint.NativeMemoryReport;
+import org.jspecify.annotations.Nullable;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Spring AOT runtime hints for {@link JvmNmtMetricsAutoConfiguration}, for GraalVM native images.
+ * <p>
+ * Registers configuration properties classes for binding, the endpoint report for JSON serialization, and the
+ * {@code String[]} signature of DiagnosticCommand operations, resolved by name by the MBean server.
+ * </p>
+ */
+class JvmNmtMetricsRuntimeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(final RuntimeHints hints, final @Nullable ClassLoader classLoader) {
+        hints.reflection()
+                .registerType(JvmNmtMetricsProperties.class, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                        MemberCategory.INVOKE_PUBLIC_METHODS)
+                .registerType(JvmNmtMetricsProperties.Sampler.class, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                        MemberCategory.INVOKE_PUBLIC_METHODS)
+                .registerType(JvmNmtMetricsProperties.NativeHeap.class, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                        MemberCategory.INVOKE_PUBLIC_METHODS)
+                .registerType(NativeMemoryEndpointProperties.class, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                        MemberCategory.INVOKE_PUBLIC_METHODS)
+                .registerType(NativeMemoryReport.class, MemberCategory.INVOKE_PUBLIC_METHODS)
+                .registerType(String[].class);
+    }
+
+}
@@ -0,0 +1,90 @@
+package io.glandais.nmt.metrics.autoconfigure;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for the native memory actuator endpoint.
+ * <p>
+ * Properties are prefixed with {@code management.endpoint.nativememory}.
+ * </p>
+ */
+@ConfigurationProperties(prefix = "management.endpoint.nativememory")
+public class NativeMemoryEndpointProperties {
+
+    /**
+     * Minimum interval between two summary (or summary diff) and baseline DiagnosticCommand calls.
+     * <p>
+     * Requests within this interval are served from the last output.
+     * </p>
+     * <p>
+     * Default: 5 seconds
+     * </p>
+     */
+    private Duration minInterval = Duration.ofSeconds(5);
+
+    /**
+     * Minimum interval between two detail DiagnosticCommand calls.
+     * <p>
+     * Default: 1 minute
+     * </p>
+     */
+    private Duration detailMinInterval = Duration.ofMinutes(1);
+
+    /**
+     * Whether the raw detail report can be requested.
+     * <p>
+     * Detail report requires {@code -XX:NativeMemoryTracking=detail}.
+     * </p>
+     * <p>
+     * Default: true
+     * </p>
+     */
+    private boolean detailEnabled = true;
+
+    /**
+     * Maximum size of a response, measured on its whole UTF-8 JSON encoding (field names and timestamps included).
+     * <p>
+     * Parsed values are always returned, raw outputs (summary diff and detail) are truncated to fit.
+     * </p>
+     * <p>
+     * Default: 1 MB
+     * </p>
+     */
+    private DataSize maxResponseSize = DataSize.ofMegabytes(1);
+
+    public Duration getMinInterval() {
+        return minInterval;
+    }
+
+    public void setMinInterval(Duration minInterval) {
+        this.minInterval = minInterval;
+    }
+
+    public Duration getDetailMinInterval() {
+        return detailMinInterval;
+    }
+
+    public void setDetailMinInterval(Duration detailMinInterval) {
+        this.detailMinInterval = detailMinInterval;
+    }
+
+    public boolean isDetailEnabled() {
+        return detailEnabled;
+    }
+
+    public void setDetailEnabled(boolean detailEnabled) {
+        this.detailEnabled = detailEnabled;
+    }
+
+    public DataSize getMaxResponseSize() {
+        return maxResponseSize;
+    }
+
+    public void setMaxResponseSize(DataSize maxResponseSize) {
+        this.maxResponseSize = maxResponseSize;
+    }
+
+}
@@ -0,0 +1,58 @@
+package io.glandais.nmt.metrics.bean;
+
+/**
+ * glibc native heap statistics, as reported by {@code jcmd <pid> System.native_heap_info}.
+ */
+public class NativeHeapInfo {
+
+    private final int arenas;
+
+    private final long systemBytes;
+
+    private final long freeBytes;
+
+    private final long mmapBytes;
+
+    public NativeHeapInfo(final int arenas, final long systemBytes, final long freeBytes, final long mmapBytes) {
+        super();
+        this.arenas = arenas;
+        this.systemBytes = systemBytes;
+        this.freeBytes = freeBytes;
+        this.mmapBytes = mmapBytes;
+    }
+
+    /**
+     * @return number of malloc arenas
+     */
+    public int getArenas() {
+        return arenas;
+    }
+
+    /**
+     * @return bytes obtained from the system by all arenas
+     */
+    public long getSystemBytes() {
+        return systemBytes;
+    }
+
+    /**
+     * @return free bytes retained by arenas (fast bins and other free chunks)
+     */
+    public long getFreeBytes() {
+        return freeBytes;
+    }
+
+    /**
+     * @return bytes allocated with mmap outside of arenas
+     */
+    public long getMmapBytes() {
+        return mmapBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "NativeHeapInfo{arenas=" + arenas + ", systemBytes=" + systemBytes + ", freeBytes=" + freeBytes
+                + ", mmapBytes=" + mmapBytes + '}';
+    }
+
+}
@@ -0,0 +1,307 @@
+package io.glandais.nmt.metrics.endpoint;
+
+import io.glandais.nmt.metrics.bean.NativeMemoryTrackingKind;
+import io.glandais.nmt.metrics.bean.NativeMemoryTrackingValues;
+import io.glandais.nmt.metrics.retriever.CoalescingSupplier;
+import io.glandais.nmt.metrics.retriever.NMTStatsRetriever;
+import org.jspecify.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+
+import javax.management.JMException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Actuator endpoint exposing an on-demand native memory report : parsed summary, summary diff against a baseline
+ * and optionally the raw detail report.
+ * <p>
+ * DiagnosticCommand calls are expensive, as they run at a safepoint. A report is built from a single call :
+ * {@code summary.diff} once a baseline exists (current values being parsed from it), {@code summary} otherwise.
+ * Concurrent requests are coalesced into a single call, calls are not repeated before a minimum interval
+ * (returning the last report instead), and raw outputs are truncated to fit a maximum response size.
+ * </p>
+ * <p>
+ * A baseline is only taken by the write operation, as it resets the JVM-wide NMT baseline : until then, no summary
+ * diff is returned.
+ * </p>
+ * <p>
+ * When NMT is not enabled, or when the DiagnosticCommand MBean is not available, the endpoint is disabled after the
+ * first call : no report is returned (404), and no further DiagnosticCommand call is made.
+ * </p>
+ */
+@Endpoint(id = "nativememory")
+public class NativeMemoryEndpoint {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NativeMemoryEndpoint.class);
+
+    // JSON encoding of a report without values, null fields being the longest variant of empty fields
+    private static final String EMPTY_REPORT = "{\"timestamp\":null,\"reserved\":{},\"committed\":{},"
+            + "\"baselineTimestamp\":null,\"summaryDiff\":null,\"detail\":null,\"truncated\":false}";
+
+    // quoted ISO-8601 instant with nanoseconds ("2024-01-31T12:00:00.123456789Z")
+    private static final int MAX_TIMESTAMP_LENGTH = 32;
+
+    private static final long REPORT_OVERHEAD = EMPTY_REPORT.length() + 2L * MAX_TIMESTAMP_LENGTH;
+
+    private final CoalescingSupplier<Snapshot> snapshot;
+
+    private final CoalescingSupplier<Output> detail;
+
+    private final CoalescingSupplier<Output> baseline;
+
+    private final boolean detailEnabled;
+
+    private final int maxResponseSize;
+
+    private volatile Instant baselineTimestamp;
+
+    private volatile boolean disabled;
+
+    /**
+     * Output of a DiagnosticCommand call with its collection time
+     */
+    private static class Output {
+        final String text;
+        final Instant timestamp;
+
+        Output(final String text, final Instant timestamp) {
+            this.text = text;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * Parsed values and summary diff of a single DiagnosticCommand call
+     */
+    private static class Snapshot {
+        final NativeMemoryTrackingValues values;
+        final String summaryDiff;
+        final Instant timestamp;
+        final Instant baselineTimestamp;
+
+        Snapshot(final NativeMemoryTrackingValues values, final String summaryDiff, final Instant timestamp,
+                 final Instant baselineTimestamp) {
+            this.values = values;
+            this.summaryDiff = summaryDiff;
+            this.timestamp = timestamp;
+            this.baselineTimestamp = baselineTimestamp;
+        }
+    }
+
+    /**
+     * @param minInterval       minimum interval between summary (or summary diff) and baseline calls
+     * @param detailMinInterval minimum interval between detail calls
+     * @param detailEnabled     whether the detail report can be requested
+     * @param maxResponseSize   maximum size of a response, in bytes of its UTF-8 JSON encoding
+     */
+    public NativeMemoryEndpoint(final Duration minInterval, final Duration detailMinInterval,
+                                final boolean detailEnabled, final int maxResponseSize) {
+        super();
+        this.snapshot = new CoalescingSupplier<>(this::takeSnapshot, minInterval);
+        this.detail = new CoalescingSupplier<>(() -> executeNow("detail"), detailMinInterval);
+        this.baseline = new CoalescingSupplier<>(() -> executeNow("baseline"), minInterval);
+        this.detailEnabled = detailEnabled;
+        this.maxResponseSize = maxResponseSize;
+    }
+
+    /**
+     * @param detail whether the raw detail report is returned
+     * @return current report, or null if NMT is not available
+     */
+    @ReadOperation
+    public @Nullable NativeMemoryReport report(@Nullable final Boolean detail) {
+        Snapshot current = currentSnapshot();
+        if (current != null && !Objects.equals(current.baselineTimestamp, baselineTimestamp)) {
+            // taken while baseline was reset
+            this.snapshot.reset();
+            current = currentSnapshot();
+        }
+        if (current == null) {
+            return null;
+        }
+
+        final Map<String, Long> reserved = toBytes(current.values, NativeMemoryTrackingKind.RESERVED);
+        final Map<String, Long> committed = toBytes(current.values, NativeMemoryTrackingKind.COMMITTED);
+        long remaining = maxResponseSize - REPORT_OVERHEAD - encodedLength(reserved) - encodedLength(committed);
+
+        boolean truncated = false;
+        String diff = null;
+        if (current.summaryDiff != null) {
+            diff = truncate(current.summaryDiff, remaining);
+            remaining -= encodedLength(diff);
+            truncated = diff.length() < current.summaryDiff.length();
+        }
+
+        String detailReport = null;
+        if (detailEnabled && Boolean.TRUE.equals(detail)) {
+            final String detailText = this.detail.get().text;
+            detailReport = truncate(detailText, remaining);
+            truncated |= detailReport.length() < detailText.length();
+        }
+
+        return new NativeMemoryReport(current.timestamp, reserved, committed, current.baselineTimestamp, diff,
+                detailReport, truncated);
+    }
+
+    /**
+     * Takes a new baseline for summary diffs.
+     *
+     * @return report against the new baseline, or null if NMT is not available
+     */
+    @WriteOperation
+    public @Nullable NativeMemoryReport baseline() {
+        if (disabled) {
+            return null;
+        }
+        final Instant timestamp;
+        try {
+            timestamp = this.baseline.get().timestamp;
+        } catch (IllegalStateException e) {
+            if (disabled) {
+                return null;
+            }
+            throw e;
+        }
+        if (!timestamp.equals(baselineTimestamp)) {
+            baselineTimestamp = timestamp;
+            this.snapshot.reset();
+        }
+        return report(false);
+    }
+
+    private @Nullable Snapshot currentSnapshot() {
+        if (disabled) {
+            return null;
+        }
+        try {
+            return this.snapshot.get();
+        } catch (IllegalStateException e) {
+            if (disabled) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private Snapshot takeSnapshot() {
+        final Instant baselineTime = this.baselineTimestamp;
+        // summary diff also prints current values
+        final Output output = executeNow(baselineTime == null ? "summary" : "summary.diff");
+        final NativeMemoryTrackingValues values = NMTStatsRetriever.extractFromNmtOutput(output.text);
+        if (NMTStatsRetriever.isNotEnabled(values)) {
+            disable("Native memory tracking is not enabled (-XX:NativeMemoryTracking=summary)");
+            throw new IllegalStateException("Native memory tracking is not enabled");
+        }
+        return new Snapshot(values, baselineTime == null ? null : output.text, output.timestamp, baselineTime);
+    }
+
+    private void disable(final String reason) {
+        if (!disabled) {
+            LOGGER.info("{}, native memory endpoint is disabled", reason);
+            disabled = true;
+        }
+    }
+
+    /**
+     * @return true if NMT or the DiagnosticCommand MBean is not available, no DiagnosticCommand call being made
+     * anymore
+     */
+    public boolean isDisabled() {
+        return disabled;
+    }
+
+    /**
+     * Executes a {@code VM.native_memory} command.
+     *
+     * @param option command option (summary, detail, baseline...)
+     * @return command output
+     * @throws JMException if DiagnosticCommand can not be invoked
+     */
+    protected String execute(final String option) throws JMException {
+        return NMTStatsRetriever.execute(NMTStatsRetriever.VM_NATIVE_MEMORY_COMMAND, option);
+    }
+
+    private Output executeNow(final String option) {
+        try {
+            return new Output(execute(option), Instant.now());
+        } catch (JMException | RuntimeException | LinkageError e) {
+            if (NMTStatsRetriever.isUnsupported(e)) {
+                disable("DiagnosticCommand MBean is not available (" + e + ")");
+            }
+            throw new IllegalStateException("Failed to execute vmNativeMemory " + option, e);
+        }
+    }
+
+    /**
+     * Truncates a text to a maximum size once encoded as a JSON string.
+     *
+     * @param text     text to truncate
+     * @param maxBytes maximum number of bytes of the UTF-8 JSON encoding
+     * @return longest prefix of text fitting in maxBytes
+     */
+    static String truncate(final String text, final long maxBytes) {
+        long bytes = 0;
+        int i = 0;
+        while (i < text.length()) {
+            final int codePoint = text.codePointAt(i);
+            bytes += encodedLength(codePoint);
+            if (bytes > maxBytes) {
+                return text.substring(0, i);
+            }
+            i += Character.charCount(codePoint);
+        }
+        return text;
+    }
+
+    /**
+     * @return number of bytes of the UTF-8 JSON encoding of a text, without quotes
+     */
+    static long encodedLength(final String text) {
+        return text.codePoints().mapToLong(NativeMemoryEndpoint::encodedLength).sum();
+    }
+
+    private static long encodedLength(final Map<String, Long> values) {
+        // "category":value,
+        return values.entrySet().stream()
+                .mapToLong(e -> encodedLength(e.getKey()) + String.valueOf(e.getValue()).length() + 4).sum();
+    }
+
+    private static int encodedLength(final int codePoint) {
+        switch (codePoint) {
+            case '"':
+            case '\\':
+            case '\n':
+            case '\r':
+            case '\t':
+            case '\b':
+            case '\f':
+                return 2;
+            default:
+                if (codePoint < 0x20) {
+                    return 6;
+                }
+                if (codePoint < 0x80) {
+                    return 1;
+                }
+                if (codePoint < 0x800) {
+                    return 2;
+                }
+                return codePoint < 0x10000 ? 3 : 4;
+        }
+    }
+
+    private static Map<String, Long> toBytes(final NativeMemoryTrackingValues values,
+                                             final NativeMemoryTrackingKind kind) {
+        final Map<String, Long> result = new TreeMap<>();
+        values.getOrDefault(kind, Map.of()).forEach((category, kb) -> result.put(category, 1024 * kb));
+        return result;
+    }
+
+}
@@ -0,0 +1,87 @@
+package io.glandais.nmt.metrics.endpoint;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Native memory report returned by {@link NativeMemoryEndpoint}.
+ */
+public class NativeMemoryReport {
+
+    private final Instant timestamp;
+
+    private final Map<String, Long> reserved;
+
+    private final Map<String, Long> committed;
+
+    private final Instant baselineTimestamp;
+
+    private final String summaryDiff;
+
+    private final String detail;
+
+    private final boolean truncated;
+
+    public NativeMemoryReport(final Instant timestamp, final Map<String, Long> reserved,
+                              final Map<String, Long> committed, final Instant baselineTimestamp,
+                              final String summaryDiff, final String detail, final boolean truncated) {
+        super();
+        this.timestamp = timestamp;
+        this.reserved = reserved;
+        this.committed = committed;
+        this.baselineTimestamp = baselineTimestamp;
+        this.summaryDiff = summaryDiff;
+        this.detail = detail;
+        this.truncated = truncated;
+    }
+
+    /**
+     * @return collection time of the summary
+     */
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return reserved memory per category, in bytes
+     */
+    public Map<String, Long> getReserved() {
+        return reserved;
+    }
+
+    /**
+     * @return committed memory per category, in bytes
+     */
+    public Map<String, Long> getCommitted() {
+        return committed;
+    }
+
+    /**
+     * @return time of the baseline used by {@link #getSummaryDiff()}, null until a baseline is taken
+     */
+    public Instant getBaselineTimestamp() {
+        return baselineTimestamp;
+    }
+
+    /**
+     * @return raw {@code VM.native_memory summary.diff} output, null until a baseline is taken
+     */
+    public String getSummaryDiff() {
+        return summaryDiff;
+    }
+
+    /**
+     * @return raw {@code VM.native_memory detail} output, if requested
+     */
+    public String getDetail() {
+        return detail;
+    }
+
+    /**
+     * @return true if raw outputs were truncated to the maximum response size
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+}
@@ -0,0 +1,91 @@
+package io.glandais.nmt.metrics.retriever;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Supplier coalescing concurrent calls to an expensive delegate, such as a DiagnosticCommand invocation.
+ * <p>
+ * Concurrent callers share a single in-flight call ("single-flight"), and the delegate is not called again before
+ * the minimum interval has elapsed since the last successful call : the last value is returned instead.
+ * A failed call is not cached, the next caller retries.
+ * </p>
+ *
+ * @param <T> supplied type
+ */
+public class CoalescingSupplier<T> implements Supplier<T> {
+
+    private final Supplier<T> delegate;
+
+    private final long minIntervalNanos;
+
+    private final AtomicReference<CompletableFuture<Timed<T>>> current = new AtomicReference<>();
+
+    private static class Timed<T> {
+        final T value;
+        final long nanoTime;
+
+        Timed(final T value, final long nanoTime) {
+            this.value = value;
+            this.nanoTime = nanoTime;
+        }
+    }
+
+    public CoalescingSupplier(final Supplier<T> delegate, final Duration minInterval) {
+        super();
+        this.delegate = delegate;
+        this.minIntervalNanos = minInterval.toNanos();
+    }
+
+    @Override
+    public T get() {
+        while (true) {
+            final CompletableFuture<Timed<T>> future = current.get();
+            if (future != null) {
+                if (!future.isDone()) {
+                    return join(future);
+                }
+                if (!future.isCompletedExceptionally()
+                        && System.nanoTime() - future.join().nanoTime < minIntervalNanos) {
+                    return future.join().value;
+                }
+            }
+            final CompletableFuture<Timed<T>> call = new CompletableFuture<>();
+            if (current.compareAndSet(future, call)) {
+                try {
+                    final T value = delegate.get();
+                    call.complete(new Timed<>(value, System.nanoTime()));
+                    return value;
+                } catch (RuntimeException | Error e) {
+                    call.completeExceptionally(e);
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets the last value, the next call will call the delegate unless a call is in flight.
+     */
+    public void reset() {
+        final CompletableFuture<Timed<T>> future = current.get();
+        if (future != null && future.isDone()) {
+            current.compareAndSet(future, null);
+        }
+    }
+
+    private static <T> T join(final CompletableFuture<Timed<T>> future) {
+        try {
+            return future.join().value;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+}
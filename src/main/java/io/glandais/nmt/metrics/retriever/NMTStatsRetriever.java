@@ -5,10 +5,14 @@ import io.glandais.nmt.metrics.bean.NativeMemoryTrackingValues;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.InstanceNotFoundException;
 import javax.management.JMException;
 import javax.management.ObjectName;
+import javax.management.ReflectionException;
 import java.lang.management.ManagementFactory;
+import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -16,16 +20,31 @@ public class NMTStatsRetriever {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(NMTStatsRetriever.class);
 
+    /**
+     * DiagnosticCommand operation of {@code jcmd <pid> VM.native_memory}
+     */
+    public static final String VM_NATIVE_MEMORY_COMMAND = "vmNativeMemory";
+
     private static final String RESERVED_PROPERTY = "reserved";
+    private static final String RESERVED_UNIT_PROPERTY = "reservedUnit";
     private static final String COMMITTED_PROPERTY = "committed";
+    private static final String COMMITTED_UNIT_PROPERTY = "committedUnit";
     private static final String CATEGORY_PROPERTY = "category";
 
+    private static final String TOTAL_CATEGORY = "total";
+
+    // Units are KB by default, but jcmd accepts scale=MB or scale=GB.
+    // Trailing fields (peak=..., readonly=...) appear on recent JDKs and are ignored.
+    // summary.diff outputs follow each value with its delta (+12KB), which is ignored too.
+    private static final String DELTA_PATTERN = "(?: [+-]\\d+[KMG]B)?";
+    private static final String VALUES_PATTERN = "reserved=(?<" + RESERVED_PROPERTY + ">\\d+)(?<"
+            + RESERVED_UNIT_PROPERTY + ">[KMG]B)" + DELTA_PATTERN + ", committed=(?<" + COMMITTED_PROPERTY
+            + ">\\d+)(?<" + COMMITTED_UNIT_PROPERTY + ">[KMG]B)" + DELTA_PATTERN;
+
     private static final Pattern CATEGORY_PATTERN = Pattern
-            .compile("-\\s*(?<" + CATEGORY_PROPERTY + ">.*) \\(reserved=(?<" + RESERVED_PROPERTY
-                    + ">\\d*)KB, committed=(?<" + COMMITTED_PROPERTY + ">\\d*)KB\\)");
+            .compile("-\\s*(?<" + CATEGORY_PROPERTY + ">.*) \\(" + VALUES_PATTERN + "[,)]");
 
-    private static final Pattern TOTAL_PATTERN = Pattern.compile(
-            "Total: reserved=(?<" + RESERVED_PROPERTY + ">\\d*)KB, committed=(?<" + COMMITTED_PROPERTY + ">\\d*)KB");
+    private static final Pattern TOTAL_PATTERN = Pattern.compile("Total: " + VALUES_PATTERN);
 
     public static String execute(String command, String... args) throws JMException {
         return (String) ManagementFactory.getPlatformMBeanServer().invoke(
@@ -35,10 +54,38 @@ public class NMTStatsRetriever {
                 new String[]{"[Ljava.lang.String;"});
     }
 
+    /**
+     * Executes {@code VM.native_memory summary} and parses its output.
+     *
+     * @return values in KB
+     * @throws JMException if DiagnosticCommand can not be invoked
+     */
+    public static NativeMemoryTrackingValues executeSummary() throws JMException {
+        return extractFromNmtOutput(execute(VM_NATIVE_MEMORY_COMMAND, "summary"));
+    }
+
+    /**
+     * @param e failure of a {@code VM.native_memory} call, possibly wrapped in an {@link ExecutionException}
+     * @return true if the failure means that NMT can not be collected in this JVM
+     */
+    public static boolean isUnsupported(final Throwable e) {
+        final Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+        // operation or MBean missing, or JMX not supported at all (native image)
+        return cause instanceof ReflectionException || cause instanceof InstanceNotFoundException
+                || cause instanceof UnsupportedOperationException || cause instanceof LinkageError;
+    }
+
+    /**
+     * @param values values parsed from a {@code VM.native_memory} output
+     * @return true if no category was parsed, NMT not being enabled ("Native memory tracking is not enabled")
+     */
+    public static boolean isNotEnabled(final NativeMemoryTrackingValues values) {
+        return values.values().stream().allMatch(Map::isEmpty);
+    }
+
     public static NativeMemoryTrackingValues retrieveNativeMemoryTrackingValues() {
         try {
-            final String output = NMTStatsRetriever.execute("vmNativeMemory", "summary");
-            return extractFromNmtOutput(output);
+            return executeSummary();
         } catch (JMException e) {
             LOGGER.error("Failed to retrieve vmNativeMemory summary");
             return new NativeMemoryTrackingValues();
@@ -50,8 +97,7 @@ public class NMTStatsRetriever {
         for (final NativeMemoryTrackingKind nmtKind : NativeMemoryTrackingKind.values()) {
             result.put(nmtKind, new TreeMap<>());
         }
-        extractTotalProperty(result, nmtOutput);
-        extractAllCategories(result, nmtOutput);
+        nmtOutput.lines().forEach(line -> extractFromNmtLine(result, line));
         LOGGER.debug("Extracted NMT properties : {}", result);
 
         if (result.isEmpty()) {
@@ -61,28 +107,83 @@ public class NMTStatsRetriever {
         return result;
     }
 
+    /**
+     * Extracts values from a single line of a NMT summary output, allowing outputs to be parsed while streaming.
+     * Lines which are not a total or category line are ignored.
+     *
+     * @param result values to complete, values are in KB
+     * @param line   line of NMT summary output
+     * @return true if the line contained NMT values
+     */
+    public static boolean extractFromNmtLine(final NativeMemoryTrackingValues result, final String line) {
+        final String trimmed = line.stripLeading();
+        if (trimmed.startsWith("-")) {
+            final Matcher matcher = CATEGORY_PATTERN.matcher(trimmed);
+            if (matcher.lookingAt()) {
+                final String category = matcher.group(CATEGORY_PROPERTY).replace(' ', '.').toLowerCase();
+                putValues(result, category, matcher);
+                return true;
+            }
+        } else if (trimmed.startsWith("Total:")) {
+            final Matcher matcher = TOTAL_PATTERN.matcher(trimmed);
+            // only the first total is kept, as in a single summary output
+            if (matcher.lookingAt() && !containsCategory(result, TOTAL_CATEGORY)) {
+                putValues(result, TOTAL_CATEGORY, matcher);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Extracts all category values of a NMT summary output.
+     *
+     * @param result    values to complete, values are in KB
+     * @param nmtOutput NMT summary output
+     * @deprecated use {@link #extractFromNmtLine(NativeMemoryTrackingValues, String)}
+     */
+    @Deprecated
     protected static void extractAllCategories(final NativeMemoryTrackingValues result, final String nmtOutput) {
-        final Matcher matcher = CATEGORY_PATTERN.matcher(nmtOutput);
-        while (matcher.find()) {
-            final String categoryString = matcher.group(CATEGORY_PROPERTY);
-            final String category = categoryString.replace(' ', '.').toLowerCase();
+        nmtOutput.lines().filter(line -> line.stripLeading().startsWith("-"))
+                .forEach(line -> extractFromNmtLine(result, line));
+    }
 
-            final long committed = Long.parseLong(matcher.group(COMMITTED_PROPERTY));
-            result.get(NativeMemoryTrackingKind.COMMITTED).put(category, committed);
+    /**
+     * Extracts total values of a NMT summary output.
+     *
+     * @param result    values to complete, values are in KB
+     * @param nmtOutput NMT summary output
+     * @deprecated use {@link #extractFromNmtLine(NativeMemoryTrackingValues, String)}
+     */
+    @Deprecated
+    protected static void extractTotalProperty(final NativeMemoryTrackingValues result, final String nmtOutput) {
+        nmtOutput.lines().filter(line -> line.stripLeading().startsWith("Total:"))
+                .forEach(line -> extractFromNmtLine(result, line));
+    }
 
-            final long reserved = Long.parseLong(matcher.group(RESERVED_PROPERTY));
-            result.get(NativeMemoryTrackingKind.RESERVED).put(category, reserved);
-        }
+    private static boolean containsCategory(final NativeMemoryTrackingValues result, final String category) {
+        final Map<String, Long> committed = result.get(NativeMemoryTrackingKind.COMMITTED);
+        return committed != null && committed.containsKey(category);
     }
 
-    protected static void extractTotalProperty(final NativeMemoryTrackingValues result, final String nmtOutput) {
-        final Matcher matcher = TOTAL_PATTERN.matcher(nmtOutput);
-        if (matcher.find()) {
-            final long committed = Long.parseLong(matcher.group(COMMITTED_PROPERTY));
-            result.get(NativeMemoryTrackingKind.COMMITTED).put("total", committed);
+    private static void putValues(final NativeMemoryTrackingValues result, final String category,
+                                  final Matcher matcher) {
+        final long committed = toKb(matcher.group(COMMITTED_PROPERTY), matcher.group(COMMITTED_UNIT_PROPERTY));
+        result.computeIfAbsent(NativeMemoryTrackingKind.COMMITTED, k -> new TreeMap<>()).put(category, committed);
+
+        final long reserved = toKb(matcher.group(RESERVED_PROPERTY), matcher.group(RESERVED_UNIT_PROPERTY));
+        result.computeIfAbsent(NativeMemoryTrackingKind.RESERVED, k -> new TreeMap<>()).put(category, reserved);
+    }
 
-            final long reserved = Long.parseLong(matcher.group(RESERVED_PROPERTY));
-            result.get(NativeMemoryTrackingKind.RESERVED).put("total", reserved);
+    private static long toKb(final String value, final String unit) {
+        final long parsed = Long.parseLong(value);
+        switch (unit) {
+            case "MB":
+                return parsed * 1024L;
+            case "GB":
+                return parsed * 1024L * 1024L;
+            default:
+                return parsed;
         }
     }
 
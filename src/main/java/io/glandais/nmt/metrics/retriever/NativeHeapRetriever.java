@@ -0,0 +1,103 @@
+package io.glandais.nmt.metrics.retriever;
+
+import io.glandais.nmt.metrics.bean.NativeHeapInfo;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses outputs of {@code System.native_heap_info} and {@code System.trim_native_heap} diagnostic commands.
+ * <p>
+ * Native heap info is the glibc {@code malloc_info} XML output, only available on Linux with glibc.
+ * </p>
+ */
+public class NativeHeapRetriever {
+
+    /**
+     * DiagnosticCommand operation of {@code jcmd <pid> System.native_heap_info}
+     */
+    public static final String NATIVE_HEAP_INFO_COMMAND = "systemNativeHeapInfo";
+
+    /**
+     * DiagnosticCommand operation of {@code jcmd <pid> System.trim_native_heap}
+     */
+    public static final String TRIM_NATIVE_HEAP_COMMAND = "systemTrimNativeHeap";
+
+    private static final Pattern HEAP_PATTERN = Pattern.compile("<heap nr=\"\\d+\">");
+
+    private static final String TOTAL_PATTERN = "<total type=\"%s\" count=\"\\d+\" size=\"(\\d+)\"/>";
+
+    private static final Pattern FAST_PATTERN = Pattern.compile(String.format(TOTAL_PATTERN, "fast"));
+
+    private static final Pattern REST_PATTERN = Pattern.compile(String.format(TOTAL_PATTERN, "rest"));
+
+    private static final Pattern MMAP_PATTERN = Pattern.compile(String.format(TOTAL_PATTERN, "mmap"));
+
+    private static final Pattern SYSTEM_PATTERN = Pattern.compile("<system type=\"current\" size=\"(\\d+)\"/>");
+
+    private static final Pattern TRIM_PATTERN = Pattern
+            .compile("RSS\\+Swap: (\\d+)([KMG]?)B?->(\\d+)([KMG]?)B?");
+
+    private NativeHeapRetriever() {
+        super();
+    }
+
+    /**
+     * Extracts malloc statistics, summed over all arenas.
+     *
+     * @param output {@code System.native_heap_info} output
+     * @return native heap statistics, or null if output is not a glibc {@code malloc_info} output
+     */
+    public static NativeHeapInfo extractFromNativeHeapInfo(final String output) {
+        final int start = output.indexOf("<malloc");
+        if (start < 0) {
+            return null;
+        }
+        int arenas = 0;
+        final Matcher heapMatcher = HEAP_PATTERN.matcher(output);
+        while (heapMatcher.find()) {
+            arenas++;
+        }
+        // totals of all arenas follow the last heap
+        final int lastHeapEnd = output.lastIndexOf("</heap>");
+        final String totals = lastHeapEnd < 0 ? output.substring(start) : output.substring(lastHeapEnd);
+        final long free = extractSize(FAST_PATTERN, totals) + extractSize(REST_PATTERN, totals);
+        return new NativeHeapInfo(arenas, extractSize(SYSTEM_PATTERN, totals), free,
+                extractSize(MMAP_PATTERN, totals));
+    }
+
+    /**
+     * Extracts bytes reclaimed by a native heap trim.
+     *
+     * @param output {@code System.trim_native_heap} output, such as
+     *               {@code Trim native heap: RSS+Swap: 8552K->8456K (-96K)}
+     * @return reclaimed bytes (negative if RSS grew meanwhile), or 0 if output can not be parsed
+     */
+    public static long extractReclaimedBytes(final String output) {
+        final Matcher matcher = TRIM_PATTERN.matcher(output);
+        if (!matcher.find()) {
+            return 0L;
+        }
+        return toBytes(matcher.group(1), matcher.group(2)) - toBytes(matcher.group(3), matcher.group(4));
+    }
+
+    private static long extractSize(final Pattern pattern, final String text) {
+        final Matcher matcher = pattern.matcher(text);
+        return matcher.find() ? Long.parseLong(matcher.group(1)) : 0L;
+    }
+
+    private static long toBytes(final String value, final String unit) {
+        final long parsed = Long.parseLong(value);
+        switch (unit) {
+            case "K":
+                return parsed * 1024L;
+            case "M":
+                return parsed * 1024L * 1024L;
+            case "G":
+                return parsed * 1024L * 1024L * 1024L;
+            default:
+                return parsed;
+        }
+    }
+
+}
@@ -0,0 +1,162 @@
+package io.glandais.nmt.metrics;
+
+import io.glandais.nmt.metrics.retriever.NativeHeapRetriever;
+import io.glandais.nmt.metrics.retriever.NativeHeapRetrieverTest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMException;
+import javax.management.ReflectionException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link JvmNativeHeapMetrics}, with canned DiagnosticCommand outputs.
+ */
+public class JvmNativeHeapMetricsTest {
+
+    private SimpleMeterRegistry registry;
+    private JvmNativeHeapMetrics metrics;
+
+    @BeforeEach
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (metrics != null) {
+            metrics.close();
+        }
+    }
+
+    /**
+     * Native heap metrics answering canned outputs, polled manually.
+     */
+    private static class CannedNativeHeapMetrics extends JvmNativeHeapMetrics {
+
+        private final List<String> commands = new ArrayList<>();
+
+        private volatile boolean trimmed;
+
+        CannedNativeHeapMetrics(final long trimThreshold, final Duration minTrimInterval) {
+            super(Duration.ofHours(1), true, trimThreshold, minTrimInterval);
+        }
+
+        @Override
+        protected String execute(final String command) throws JMException {
+            synchronized (commands) {
+                commands.add(command);
+            }
+            if (NativeHeapRetriever.TRIM_NATIVE_HEAP_COMMAND.equals(command)) {
+                trimmed = true;
+                return "Trim native heap: RSS+Swap: 8552K->8456K (-96K)";
+            }
+            if (trimmed) {
+                // some free chunks returned to the system
+                return NativeHeapRetrieverTest.NATIVE_HEAP_INFO.replace("size=\"1000036\"", "size=\"1000000\"");
+            }
+            return NativeHeapRetrieverTest.NATIVE_HEAP_INFO;
+        }
+
+        long count(final String command) {
+            synchronized (commands) {
+                return commands.stream().filter(command::equals).count();
+            }
+        }
+    }
+
+    private void awaitFirstPoll() throws InterruptedException {
+        for (int i = 0; i < 100 && metrics.getNativeHeapInfo() == null; i++) {
+            Thread.sleep(50);
+        }
+    }
+
+    @Test
+    public void testGaugesAndTrim() throws InterruptedException {
+        final CannedNativeHeapMetrics canned = new CannedNativeHeapMetrics(1000000L, Duration.ofHours(1));
+        metrics = canned;
+        metrics.bindTo(registry);
+        awaitFirstPoll();
+
+        assertEquals(2, registry.get("jvm.memory.native.heap.arenas").gauge().value());
+        assertEquals(2135168, registry.get("jvm.memory.native.heap.system").gauge().value());
+        assertEquals(1000064, registry.get("jvm.memory.native.heap.free").gauge().value(),
+                "free should be read after trim");
+        assertEquals(4194304, registry.get("jvm.memory.native.heap.mmap").gauge().value());
+        assertEquals(1, registry.get("jvm.memory.native.heap.trims").counter().count());
+        assertEquals(96 * 1024, registry.get("jvm.memory.native.heap.trim.reclaimed").counter().count());
+
+        // rate limited by min trim interval
+        canned.poll();
+        canned.poll();
+        assertEquals(1, canned.count(NativeHeapRetriever.TRIM_NATIVE_HEAP_COMMAND));
+        assertEquals(4, canned.count(NativeHeapRetriever.NATIVE_HEAP_INFO_COMMAND));
+    }
+
+    @Test
+    public void testNoTrimBelowThreshold() throws InterruptedException {
+        final CannedNativeHeapMetrics canned = new CannedNativeHeapMetrics(2000000L, Duration.ZERO);
+        metrics = canned;
+        metrics.bindTo(registry);
+        awaitFirstPoll();
+        canned.poll();
+
+        assertEquals(1000100, registry.get("jvm.memory.native.heap.free").gauge().value());
+        assertEquals(0, canned.count(NativeHeapRetriever.TRIM_NATIVE_HEAP_COMMAND));
+        assertEquals(0, registry.get("jvm.memory.native.heap.trims").counter().count());
+    }
+
+    @Test
+    public void testUnavailable() throws InterruptedException {
+        metrics = new JvmNativeHeapMetrics(Duration.ofMillis(10), true, 0L, Duration.ZERO) {
+            @Override
+            protected String execute(final String command) throws JMException {
+                throw new ReflectionException(new NoSuchMethodException(command));
+            }
+        };
+        metrics.bindTo(registry);
+        Thread.sleep(200);
+
+        assertNull(metrics.getNativeHeapInfo());
+        assertNull(registry.find("jvm.memory.native.heap.free").gauge(), "no meter should be registered");
+    }
+
+    @Test
+    public void testBindingAgainStopsPreviousPolling() throws InterruptedException {
+        final AtomicInteger reads = new AtomicInteger();
+        metrics = new JvmNativeHeapMetrics(Duration.ofMillis(10), false, 0L, Duration.ZERO) {
+            @Override
+            protected String execute(final String command) {
+                reads.incrementAndGet();
+                return NativeHeapRetrieverTest.NATIVE_HEAP_INFO;
+            }
+        };
+        final SimpleMeterRegistry previous = new SimpleMeterRegistry();
+        metrics.bindTo(previous);
+        awaitFirstPoll();
+        metrics.bindTo(registry);
+
+        for (int i = 0; i < 100 && registry.find("jvm.memory.native.heap.free").gauge() == null; i++) {
+            Thread.sleep(50);
+        }
+        assertNotNull(registry.find("jvm.memory.native.heap.free").gauge(),
+                "gauges should be registered on new registry");
+        assertNotNull(registry.find("jvm.memory.native.heap.trims").counter(),
+                "counters should be registered on new registry");
+
+        // previous scheduler would keep polling
+        metrics.close();
+        Thread.sleep(50);
+        final int count = reads.get();
+        Thread.sleep(100);
+        assertEquals(count, reads.get(), "no polling should remain once closed");
+    }
+
+}
@@ -1,15 +1,24 @@
 package io.glandais.nmt.metrics;
 
+import io.glandais.nmt.metrics.bean.NativeMemoryTrackingValues;
+import io.glandais.nmt.metrics.retriever.NMTStatsRetriever;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.Meter;
 import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.TimeGauge;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import javax.management.JMException;
+import javax.management.ReflectionException;
 import java.time.Duration;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -33,6 +42,7 @@ public class JvmNmtMetricsTest {
     public void testBindToRegistersMeters() {
         // When
         jvmNmtMetrics.bindTo(registry);
+        assertTrue(jvmNmtMetrics.awaitInitialCollection(Duration.ofSeconds(10)), "Collection should complete");
 
         // Then
         List<Meter> meters = registry.getMeters();
@@ -55,6 +65,7 @@ public class JvmNmtMetricsTest {
     public void testNmtCategoriesAvailable() {
         // When
         jvmNmtMetrics.bindTo(registry);
+        assertTrue(jvmNmtMetrics.awaitInitialCollection(Duration.ofSeconds(10)), "Collection should complete");
 
         // Then
         Set<String> categories = registry.getMeters().stream()
@@ -77,6 +88,7 @@ public class JvmNmtMetricsTest {
     public void testMetricValuesArePositive() {
         // When
         jvmNmtMetrics.bindTo(registry);
+        assertTrue(jvmNmtMetrics.awaitInitialCollection(Duration.ofSeconds(10)), "Collection should complete");
 
         // Then
         List<Gauge> gauges = registry.getMeters().stream()
@@ -120,6 +132,7 @@ public class JvmNmtMetricsTest {
 
         // When
         shortCacheMetrics.bindTo(testRegistry);
+        assertTrue(shortCacheMetrics.awaitInitialCollection(Duration.ofSeconds(10)), "Collection should complete");
 
         // Get initial value (using lowercase "total" for newer Java versions)
         Gauge gauge = testRegistry.find("jvm.memory.nmt.reserved")
@@ -143,9 +156,12 @@ public class JvmNmtMetricsTest {
     public void testMetricUnitsAndDescriptions() {
         // When
         jvmNmtMetrics.bindTo(registry);
+        assertTrue(jvmNmtMetrics.awaitInitialCollection(Duration.ofSeconds(10)), "Collection should complete");
 
         // Then
-        List<Meter> meters = registry.getMeters();
+        List<Meter> meters = registry.getMeters().stream()
+                .filter(m -> !m.getId().getName().equals("jvm.memory.nmt.staleness"))
+                .collect(Collectors.toList());
 
         for (Meter meter : meters) {
             // Verify base unit is set to bytes
@@ -167,4 +183,247 @@ public class JvmNmtMetricsTest {
             }
         }
     }
+
+    @Test
+    public void testLastGoodValuesServedOnTimeout() throws InterruptedException {
+        AtomicBoolean slow = new AtomicBoolean(false);
+        JvmNmtMetrics slowMetrics = new JvmNmtMetrics(Duration.ofMillis(10), Duration.ofSeconds(1), 3,
+                Duration.ofMinutes(1)) {
+            @Override
+            protected NativeMemoryTrackingValues computeVmNativeMemorySummary() throws JMException {
+                if (slow.get()) {
+                    try {
+                        Thread.sleep(3000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.computeVmNativeMemorySummary();
+            }
+        };
+        slowMetrics.bindTo(registry);
+        assertTrue(slowMetrics.awaitInitialCollection(Duration.ofSeconds(10)), "Collection should complete");
+
+        Gauge gauge = registry.find("jvm.memory.nmt.committed").tag("category", "total").gauge();
+        assertNotNull(gauge, "Metric should exist");
+        TimeGauge staleness = registry.find("jvm.memory.nmt.staleness").timeGauge();
+        assertNotNull(staleness, "Staleness metric should exist");
+        assertTrue(staleness.value(TimeUnit.SECONDS) >= 0, "Staleness should be known after first collection");
+
+        slow.set(true);
+        Thread.sleep(20);
+
+        long start = System.nanoTime();
+        double value = gauge.value();
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(value > 0, "Last good value should be served");
+        assertTrue(elapsedMillis < 2500, "Collection should be bounded by timeout, took " + elapsedMillis + "ms");
+    }
+
+    @Test
+    public void testStalenessOfHarvestedCollection() throws InterruptedException {
+        AtomicBoolean slow = new AtomicBoolean(false);
+        JvmNmtMetrics slowMetrics = new JvmNmtMetrics(Duration.ofMillis(10), Duration.ofMillis(200), 3,
+                Duration.ofMinutes(1)) {
+            @Override
+            protected NativeMemoryTrackingValues computeVmNativeMemorySummary() throws JMException {
+                if (slow.get()) {
+                    try {
+                        Thread.sleep(600);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.computeVmNativeMemorySummary();
+            }
+        };
+        slowMetrics.bindTo(registry);
+        assertTrue(slowMetrics.awaitInitialCollection(Duration.ofSeconds(10)), "Collection should complete");
+        Gauge gauge = registry.find("jvm.memory.nmt.committed").tag("category", "total").gauge();
+        assertNotNull(gauge, "Metric should exist");
+        TimeGauge staleness = registry.find("jvm.memory.nmt.staleness").timeGauge();
+        assertNotNull(staleness, "Staleness metric should exist");
+
+        slow.set(true);
+        Thread.sleep(20);
+        // times out, the collection completes in background
+        gauge.value();
+        slow.set(false);
+        Thread.sleep(1000);
+        // harvests the collection completed ~600ms ago
+        gauge.value();
+
+        assertTrue(staleness.value(TimeUnit.SECONDS) >= 0.3,
+                "Staleness should be based on collection time, was " + staleness.value(TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCircuitBreakerOpensAfterFailures() throws InterruptedException {
+        AtomicBoolean failing = new AtomicBoolean(false);
+        AtomicInteger calls = new AtomicInteger();
+        JvmNmtMetrics failingMetrics = new JvmNmtMetrics(Duration.ofMillis(10), Duration.ofSeconds(1), 2,
+                Duration.ofMinutes(1)) {
+            @Override
+            protected NativeMemoryTrackingValues computeVmNativeMemorySummary() throws JMException {
+                calls.incrementAndGet();
+                if (failing.get()) {
+                    throw new JMException("failure");
+                }
+                return super.computeVmNativeMemorySummary();
+            }
+        };
+        failingMetrics.bindTo(registry);
+        assertTrue(failingMetrics.awaitInitialCollection(Duration.ofSeconds(10)), "Collection should complete");
+        Gauge gauge = registry.find("jvm.memory.nmt.committed").tag("category", "total").gauge();
+        assertNotNull(gauge, "Metric should exist");
+
+        failing.set(true);
+        for (int i = 0; i < 5; i++) {
+            Thread.sleep(20);
+            assertTrue(gauge.value() > 0, "Last good value should be served");
+        }
+
+        // initial call and two failures, then circuit is open
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void testBindToDoesNotCollect() {
+        CountDownLatch release = new CountDownLatch(1);
+        JvmNmtMetrics slowMetrics = new JvmNmtMetrics() {
+            @Override
+            protected NativeMemoryTrackingValues computeVmNativeMemorySummary() throws JMException {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.computeVmNativeMemorySummary();
+            }
+        };
+
+        long start = System.nanoTime();
+        slowMetrics.bindTo(registry);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMillis < 1000, "bindTo should not wait for collection, took " + elapsedMillis + "ms");
+        assertNull(registry.find("jvm.memory.nmt.committed").gauge(), "No category before first collection");
+
+        release.countDown();
+        assertTrue(slowMetrics.awaitInitialCollection(Duration.ofSeconds(10)), "Collection should complete");
+        assertNotNull(registry.find("jvm.memory.nmt.committed").tag("category", "total").gauge(),
+                "Metric should exist after first collection");
+    }
+
+    @Test
+    public void testDisabledWhenDiagnosticCommandUnavailable() {
+        AtomicInteger calls = new AtomicInteger();
+        JvmNmtMetrics unavailableMetrics = new JvmNmtMetrics(Duration.ofMillis(1)) {
+            @Override
+            protected NativeMemoryTrackingValues computeVmNativeMemorySummary() throws JMException {
+                calls.incrementAndGet();
+                throw new ReflectionException(new NoSuchMethodException("vmNativeMemory"));
+            }
+        };
+        unavailableMetrics.bindTo(registry);
+        assertFalse(unavailableMetrics.awaitInitialCollection(Duration.ofSeconds(10)), "No collection should succeed");
+
+        assertTrue(unavailableMetrics.isDisabled(), "Metrics should be disabled");
+        assertNull(unavailableMetrics.getVmNativeMemorySummary());
+        assertNull(unavailableMetrics.getVmNativeMemorySummary());
+        assertEquals(1, calls.get(), "No collection after detection");
+        assertNull(registry.find("jvm.memory.nmt.committed").gauge(), "No category should be registered");
+    }
+
+    @Test
+    public void testDisabledWhenNmtNotEnabled() {
+        AtomicInteger calls = new AtomicInteger();
+        JvmNmtMetrics notEnabledMetrics = new JvmNmtMetrics(Duration.ofMillis(1)) {
+            @Override
+            protected NativeMemoryTrackingValues computeVmNativeMemorySummary() {
+                calls.incrementAndGet();
+                return NMTStatsRetriever.extractFromNmtOutput("Native memory tracking is not enabled");
+            }
+        };
+        notEnabledMetrics.bindTo(registry);
+        assertFalse(notEnabledMetrics.awaitInitialCollection(Duration.ofSeconds(10)), "No collection should succeed");
+
+        assertTrue(notEnabledMetrics.isDisabled(), "Metrics should be disabled");
+        assertNull(notEnabledMetrics.getVmNativeMemorySummary());
+        assertEquals(1, calls.get(), "No collection after detection");
+    }
+
+    @Test
+    public void testInitialCollectionRetriedAfterTimeout() {
+        AtomicBoolean first = new AtomicBoolean(true);
+        JvmNmtMetrics slowStartMetrics = new JvmNmtMetrics(Duration.ofSeconds(10), Duration.ofMillis(500), 3,
+                Duration.ofMinutes(1)) {
+            @Override
+            protected NativeMemoryTrackingValues computeVmNativeMemorySummary() throws JMException {
+                if (first.getAndSet(false)) {
+                    try {
+                        Thread.sleep(1000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.computeVmNativeMemorySummary();
+            }
+        };
+        slowStartMetrics.bindTo(registry);
+
+        assertFalse(slowStartMetrics.awaitInitialCollection(Duration.ofMillis(200)),
+                "First collection should not be done yet");
+        assertTrue(slowStartMetrics.awaitInitialCollection(Duration.ofSeconds(10)),
+                "Collection should succeed after first timeout");
+        assertFalse(slowStartMetrics.isDisabled());
+        assertNotNull(registry.find("jvm.memory.nmt.committed").tag("category", "total").gauge(),
+                "Metric should exist after retried collection");
+    }
+
+    @Test
+    public void testTimedOutCollectionHarvestedWhileCircuitIsOpen() throws InterruptedException {
+        AtomicBoolean slow = new AtomicBoolean(false);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        JvmNmtMetrics slowMetrics = new JvmNmtMetrics(Duration.ofMillis(10), Duration.ofMillis(100), 3,
+                Duration.ofMinutes(1)) {
+            @Override
+            protected NativeMemoryTrackingValues computeVmNativeMemorySummary() {
+                calls.incrementAndGet();
+                if (!slow.get()) {
+                    return NMTStatsRetriever.extractFromNmtOutput("Total: reserved=1000KB, committed=100KB\n");
+                }
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return NMTStatsRetriever.extractFromNmtOutput("Total: reserved=1000KB, committed=200KB\n");
+            }
+        };
+        slowMetrics.bindTo(registry);
+        assertTrue(slowMetrics.awaitInitialCollection(Duration.ofSeconds(10)), "Collection should complete");
+        Gauge gauge = registry.find("jvm.memory.nmt.committed").tag("category", "total").gauge();
+        assertNotNull(gauge, "Metric should exist");
+
+        slow.set(true);
+        // three timeouts of the same call open the circuit breaker
+        for (int i = 0; i < 3; i++) {
+            Thread.sleep(20);
+            assertEquals(100 * 1024, gauge.value(), "Last good value should be served");
+        }
+        Thread.sleep(20);
+        assertEquals(100 * 1024, gauge.value(), "Last good value should be served while circuit is open");
+
+        release.countDown();
+        Thread.sleep(100);
+
+        assertEquals(200 * 1024, gauge.value(), "Completed collection should be harvested while circuit is open");
+        assertEquals(2, calls.get(), "No new call should be made while circuit is open");
+        TimeGauge staleness = registry.find("jvm.memory.nmt.staleness").timeGauge();
+        assertNotNull(staleness, "Staleness metric should exist");
+        assertTrue(staleness.value(TimeUnit.SECONDS) < 1, "Staleness should be based on harvested collection");
+    }
 }
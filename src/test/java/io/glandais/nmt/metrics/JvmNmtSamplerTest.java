@@ -0,0 +1,174 @@
+package io.glandais.nmt.metrics;
+
+import io.glandais.nmt.metrics.bean.NativeMemoryTrackingKind;
+import io.glandais.nmt.metrics.bean.NativeMemoryTrackingValues;
+import io.glandais.nmt.metrics.retriever.NMTStatsRetriever;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMException;
+import javax.management.ReflectionException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link JvmNmtSampler}.
+ * Requires JVM to be started with -XX:NativeMemoryTracking=summary
+ */
+public class JvmNmtSamplerTest {
+
+    private SimpleMeterRegistry registry;
+    private JvmNmtSampler sampler;
+
+    @BeforeEach
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (sampler != null) {
+            sampler.close();
+        }
+    }
+
+    private static NativeMemoryTrackingValues values(final long totalCommittedKb) {
+        final NativeMemoryTrackingValues values = new NativeMemoryTrackingValues();
+        final Map<String, Long> committed = new TreeMap<>();
+        committed.put("total", totalCommittedKb);
+        values.put(NativeMemoryTrackingKind.COMMITTED, committed);
+        return values;
+    }
+
+    private Gauge awaitGauge(final String name) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            final Gauge gauge = registry.find(name).tag("category", "total").gauge();
+            if (gauge != null) {
+                return gauge;
+            }
+            Thread.sleep(50);
+        }
+        return null;
+    }
+
+    @Test
+    public void testSamplerRegistersMaxAndMinGauges() throws InterruptedException {
+        sampler = new JvmNmtSampler(Duration.ofMillis(10), 0.5);
+        sampler.bindTo(registry);
+
+        final Gauge max = awaitGauge("jvm.memory.nmt.committed.max");
+        final Gauge min = awaitGauge("jvm.memory.nmt.committed.min");
+        assertNotNull(max, "max gauge should be registered");
+        assertNotNull(min, "min gauge should be registered");
+        assertTrue(max.value() > 0, "max should be positive");
+        assertTrue(min.value() > 0, "min should be positive");
+        assertTrue(sampler.getLastCpuTimeNanos() >= 0, "CPU time of samples should be measured");
+    }
+
+    @Test
+    public void testGaugesResetOnRead() throws InterruptedException {
+        sampler = new JvmNmtSampler(Duration.ofHours(1), 1.0) {
+            @Override
+            protected NativeMemoryTrackingValues computeVmNativeMemorySummary() {
+                return values(150);
+            }
+        };
+        sampler.bindTo(registry);
+        final Gauge max = awaitGauge("jvm.memory.nmt.committed.max");
+        final Gauge min = awaitGauge("jvm.memory.nmt.committed.min");
+        assertNotNull(max, "max gauge should be registered");
+        assertNotNull(min, "min gauge should be registered");
+        assertEquals(150 * 1024, max.value(), "max of first window");
+        assertEquals(150 * 1024, min.value(), "min of first window");
+
+        sampler.record(values(100));
+        sampler.record(values(300));
+        sampler.record(values(200));
+
+        assertEquals(300 * 1024, max.value(), "max of window");
+        assertEquals(100 * 1024, min.value(), "min of window");
+
+        // new window starts at last value
+        assertEquals(200 * 1024, max.value(), "max after reset");
+        assertEquals(200 * 1024, min.value(), "min after reset");
+
+        sampler.record(values(250));
+        assertEquals(250 * 1024, max.value(), "max of next window");
+        assertEquals(200 * 1024, min.value(), "min of next window");
+    }
+
+    @Test
+    public void testInvalidCpuBudgetIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new JvmNmtSampler(Duration.ofSeconds(1), 0));
+        assertThrows(IllegalArgumentException.class, () -> new JvmNmtSampler(Duration.ofSeconds(1), -0.5));
+        assertThrows(IllegalArgumentException.class, () -> new JvmNmtSampler(Duration.ofSeconds(1), Double.NaN));
+    }
+
+    @Test
+    public void testBindingAgainStopsPreviousSampling() throws InterruptedException {
+        final AtomicInteger samples = new AtomicInteger();
+        sampler = new JvmNmtSampler(Duration.ofMillis(10), 1.0) {
+            @Override
+            protected NativeMemoryTrackingValues computeVmNativeMemorySummary() {
+                samples.incrementAndGet();
+                return values(150);
+            }
+        };
+        final SimpleMeterRegistry previous = new SimpleMeterRegistry();
+        sampler.bindTo(previous);
+        sampler.bindTo(registry);
+
+        assertNotNull(awaitGauge("jvm.memory.nmt.committed.max"), "gauges should be registered on new registry");
+
+        // previous scheduler would keep sampling
+        sampler.close();
+        Thread.sleep(50);
+        final int count = samples.get();
+        Thread.sleep(100);
+        assertEquals(count, samples.get(), "no sampling should remain once closed");
+    }
+
+
+    @Test
+    public void testSamplingStopsWhenDiagnosticCommandUnavailable() throws InterruptedException {
+        final AtomicInteger samples = new AtomicInteger();
+        sampler = new JvmNmtSampler(Duration.ofMillis(10), 1.0) {
+            @Override
+            protected NativeMemoryTrackingValues computeVmNativeMemorySummary() throws JMException {
+                samples.incrementAndGet();
+                throw new ReflectionException(new NoSuchMethodException("vmNativeMemory"));
+            }
+        };
+        sampler.bindTo(registry);
+        Thread.sleep(200);
+
+        assertTrue(sampler.isDisabled(), "Sampling should be disabled");
+        assertEquals(1, samples.get(), "No sample after detection");
+    }
+
+    @Test
+    public void testSamplingStopsWhenNmtNotEnabled() throws InterruptedException {
+        final AtomicInteger samples = new AtomicInteger();
+        sampler = new JvmNmtSampler(Duration.ofMillis(10), 1.0) {
+            @Override
+            protected NativeMemoryTrackingValues computeVmNativeMemorySummary() {
+                samples.incrementAndGet();
+                return NMTStatsRetriever.extractFromNmtOutput("Native memory tracking is not enabled");
+            }
+        };
+        sampler.bindTo(registry);
+        Thread.sleep(200);
+
+        assertTrue(sampler.isDisabled(), "Sampling should be disabled");
+        assertEquals(1, samples.get(), "No sample after detection");
+        assertNull(registry.find("jvm.memory.nmt.committed.max").gauge(), "No category should be registered");
+    }
+
+}
@@ -0,0 +1,179 @@
+package io.glandais.nmt.metrics.analyzer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests for {@link NMTArchiveAnalyzer}.
+ */
+public class NMTArchiveAnalyzerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static String jdk8Dump(final long totalCommitted, final long threadCommitted) {
+        return "4242:\n" +
+                "\n" +
+                "Native Memory Tracking:\n" +
+                "\n" +
+                "Total: reserved=1470626KB, committed=" + totalCommitted + "KB\n" +
+                "-                 Java Heap (reserved=65536KB, committed=46592KB)\n" +
+                "                            (mmap: reserved=65536KB, committed=46592KB) \n" +
+                " \n" +
+                "-                    Thread (reserved=22009KB, committed=" + threadCommitted + "KB)\n" +
+                "                            (thread #22)\n" +
+                "                            (stack: reserved=21504KB, committed=21504KB)\n";
+    }
+
+    private static String jdk21Dump(final long totalCommitted, final long threadCommitted) {
+        return "Native Memory Tracking:\n" +
+                "\n" +
+                "(Omitting categories weighting less than 1KB)\n" +
+                "\n" +
+                "Total: reserved=2939208KB, committed=" + totalCommitted + "KB\n" +
+                "       malloc: 4608KB #18465, peak=5120KB #19000\n" +
+                "       mmap:   reserved=2934600KB, committed=120036KB\n" +
+                "\n" +
+                "-                 Java Heap (reserved=1538048KB, committed=96256KB)\n" +
+                "                            (mmap: reserved=1538048KB, committed=96256KB, at peak) \n" +
+                " \n" +
+                "-                    Thread (reserved=13348KB, committed=" + threadCommitted + "KB)\n" +
+                "                            (threads #13)\n" +
+                "                            (stack: reserved=13312KB, committed=672KB, peak=700KB)\n";
+    }
+
+    private static void writeGzip(final Path file, final String content) throws IOException {
+        try (OutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(file));
+             Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)) {
+            writer.write(content);
+        }
+    }
+
+    @Test
+    public void shouldRankGrowthAcrossPlainAndGzipFiles() throws IOException {
+        final Path archive = Files.createDirectories(tempDir.resolve("archive"));
+        final Path podA = Files.createDirectories(archive.resolve("pod-a"));
+        final Path podB = Files.createDirectories(archive.resolve("pod-b"));
+        Files.writeString(podA.resolve("nmt-2024-01-31T12-00-00.txt"), jdk8Dump(170000, 20000));
+        writeGzip(podA.resolve("nmt-2024-01-31T13-00-00.txt.gz"), jdk8Dump(190000, 30000));
+        // several dumps appended in a single file
+        Files.writeString(podB.resolve("nmt-20240131-120000.log"),
+                jdk21Dump(124000, 700) + jdk21Dump(125000, 800) + jdk21Dump(126000, 900));
+        Files.writeString(podB.resolve("README.txt"), "not a NMT output");
+
+        final Path output = tempDir.resolve("report");
+        final NMTArchiveReport report = new NMTArchiveAnalyzer(output, 2, 5).analyze(List.of(archive));
+
+        assertEquals(4, report.getFiles());
+        assertEquals(5, report.getDumps());
+        assertEquals(1, report.getSkippedFiles());
+        assertEquals(0, report.getFailedFiles());
+        // (total, java.heap, thread) for each pod
+        assertEquals(6, report.getRanking().size());
+
+        final NMTSeriesStats first = report.getRanking().get(0);
+        assertEquals("pod-a", first.getSource());
+        assertEquals("total", first.getCategory());
+        assertEquals(20000L * 1024, first.getGrowth());
+        assertEquals(Instant.parse("2024-01-31T12:00:00Z"), first.getFirstTimestamp());
+        assertEquals(Instant.parse("2024-01-31T13:00:00Z"), first.getLastTimestamp());
+
+        final Optional<NMTSeriesStats> podBThread = report.getRanking().stream()
+                .filter(s -> s.getSource().equals("pod-b") && s.getCategory().equals("thread"))
+                .findFirst();
+        assertTrue(podBThread.isPresent());
+        assertEquals(3, podBThread.get().getSamples());
+        assertEquals(200L * 1024, podBThread.get().getGrowth());
+        assertEquals(700L * 1024, podBThread.get().getMinCommitted());
+        assertEquals(900L * 1024, podBThread.get().getMaxCommitted());
+
+        final List<String> timeseries = Files.readAllLines(output.resolve(NMTArchiveAnalyzer.TIMESERIES_FILE));
+        assertEquals(1 + 5 * 3, timeseries.size());
+        final List<String> growth = Files.readAllLines(output.resolve(NMTArchiveAnalyzer.GROWTH_FILE));
+        assertEquals(1 + 6, growth.size());
+        assertTrue(growth.get(1).startsWith("1,pod-a,total,2,"));
+        final String summary = Files.readString(output.resolve(NMTArchiveAnalyzer.SUMMARY_FILE));
+        assertTrue(summary.contains("\"dumps\": 5"));
+        assertTrue(summary.contains("{\"source\": \"pod-a\", \"category\": \"total\""));
+    }
+
+    @Test
+    public void shouldUseFileNameAsSourceAtRoot() throws IOException {
+        final Path file = tempDir.resolve("service-1706702400.txt");
+        Files.writeString(file, jdk8Dump(170000, 20000));
+
+        assertEquals("service-1706702400", NMTArchiveAnalyzer.getSource(tempDir, file));
+        assertEquals(Instant.ofEpochSecond(1706702400L), NMTArchiveAnalyzer.getTimestamp(file));
+    }
+
+    @Test
+    public void shouldNotTakeDigitRunsForDates() throws IOException {
+        final Path file = tempDir.resolve("pod-12345678901234.txt");
+        Files.writeString(file, jdk8Dump(170000, 20000));
+        final Instant modified = Instant.parse("2024-02-01T10:00:00Z");
+        Files.setLastModifiedTime(file, FileTime.from(modified));
+
+        assertEquals(modified, NMTArchiveAnalyzer.getTimestamp(file));
+        assertEquals(Instant.parse("2024-01-31T12:00:00Z"),
+                NMTArchiveAnalyzer.getTimestamp(tempDir.resolve("nmt-20240131T120000.txt")));
+    }
+
+    @Test
+    public void shouldRejectInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new NMTArchiveAnalyzer(tempDir, 0, 5));
+        assertThrows(IllegalArgumentException.class, () -> new NMTArchiveAnalyzer(tempDir, 2, 0));
+    }
+
+    @Test
+    public void shouldCountUnlistableInputsAsFailed() throws IOException {
+        final Path archive = Files.createDirectories(tempDir.resolve("archive"));
+        Files.writeString(Files.createDirectories(archive.resolve("pod-a")).resolve("nmt-20240131T120000.txt"),
+                jdk8Dump(170000, 20000));
+        final Path output = tempDir.resolve("output");
+
+        final NMTArchiveReport report = new NMTArchiveAnalyzer(output, 2, 5)
+                .analyze(List.of(archive, tempDir.resolve("missing")));
+
+        assertEquals(1, report.getFiles());
+        assertEquals(1, report.getFailedFiles());
+        assertTrue(Files.exists(output.resolve(NMTArchiveAnalyzer.GROWTH_FILE)));
+        assertTrue(Files.exists(output.resolve(NMTArchiveAnalyzer.SUMMARY_FILE)));
+    }
+
+    @Test
+    public void shouldSkipUnreadableDirectories() throws IOException {
+        final Path archive = Files.createDirectories(tempDir.resolve("archive"));
+        Files.writeString(Files.createDirectories(archive.resolve("pod-a")).resolve("nmt-20240131T120000.txt"),
+                jdk8Dump(170000, 20000));
+        final Path unreadable = Files.createDirectories(archive.resolve("pod-b"));
+        Files.writeString(unreadable.resolve("nmt-20240131T120000.txt"), jdk8Dump(170000, 20000));
+        assumeTrue(unreadable.toFile().setReadable(false, false) && !Files.isReadable(unreadable),
+                "Directory permissions are not enforced (root)");
+        try {
+            final NMTArchiveReport report = new NMTArchiveAnalyzer(tempDir.resolve("output"), 2, 5)
+                    .analyze(List.of(archive));
+
+            assertEquals(1, report.getFiles());
+            assertEquals(1, report.getFailedFiles());
+        } finally {
+            unreadable.toFile().setReadable(true, false);
+        }
+    }
+
+}
@@ -1,14 +1,21 @@
 package io.glandais.nmt.metrics.autoconfigure;
 
+import io.glandais.nmt.metrics.JvmNativeHeapMetrics;
 import io.glandais.nmt.metrics.JvmNmtMetrics;
+import io.glandais.nmt.metrics.JvmNmtSampler;
+import io.glandais.nmt.metrics.endpoint.NativeMemoryEndpoint;
+import io.glandais.nmt.metrics.endpoint.NativeMemoryReport;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
 import org.springframework.boot.autoconfigure.AutoConfigurations;
 import org.springframework.boot.test.context.FilteredClassLoader;
 import org.springframework.boot.test.context.runner.ApplicationContextRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
 
 import java.time.Duration;
 
@@ -105,6 +112,97 @@ public class JvmNmtMetricsAutoConfigurationTest {
                 });
     }
 
+    /**
+     * Test that sampler is only created when enabled.
+     */
+    @Test
+    public void shouldCreateSamplerOnlyWhenEnabled() {
+        this.contextRunner
+                .withUserConfiguration(MeterRegistryConfiguration.class)
+                .run(context -> assertTrue(context.getBeansOfType(JvmNmtSampler.class).isEmpty(),
+                        "JvmNmtSampler bean should NOT be created by default"));
+        this.contextRunner
+                .withUserConfiguration(MeterRegistryConfiguration.class)
+                .withPropertyValues("management.metrics.nmt.sampler.enabled=true",
+                        "management.metrics.nmt.sampler.interval=500ms",
+                        "management.metrics.nmt.sampler.cpu-budget=0.05")
+                .run(context -> {
+                    assertNotNull(context.getBean(JvmNmtSampler.class), "JvmNmtSampler bean should be created");
+                    JvmNmtMetricsProperties properties = context.getBean(JvmNmtMetricsProperties.class);
+                    assertEquals(Duration.ofMillis(500), properties.getSampler().getInterval());
+                    assertEquals(0.05, properties.getSampler().getCpuBudget());
+                });
+    }
+
+    /**
+     * Test that native heap metrics are only created when enabled.
+     */
+    @Test
+    public void shouldCreateNativeHeapMetricsOnlyWhenEnabled() {
+        this.contextRunner
+                .withUserConfiguration(MeterRegistryConfiguration.class)
+                .run(context -> assertTrue(context.getBeansOfType(JvmNativeHeapMetrics.class).isEmpty(),
+                        "JvmNativeHeapMetrics bean should NOT be created by default"));
+        this.contextRunner
+                .withUserConfiguration(MeterRegistryConfiguration.class)
+                .withPropertyValues("management.metrics.nmt.native-heap.enabled=true",
+                        "management.metrics.nmt.native-heap.trim-enabled=true",
+                        "management.metrics.nmt.native-heap.trim-threshold=128MB",
+                        "management.metrics.nmt.native-heap.trim-min-interval=10m")
+                .run(context -> {
+                    assertNotNull(context.getBean(JvmNativeHeapMetrics.class),
+                            "JvmNativeHeapMetrics bean should be created");
+                    JvmNmtMetricsProperties properties = context.getBean(JvmNmtMetricsProperties.class);
+                    assertTrue(properties.getNativeHeap().isTrimEnabled());
+                    assertEquals(DataSize.ofMegabytes(128), properties.getNativeHeap().getTrimThreshold());
+                    assertEquals(Duration.ofMinutes(10), properties.getNativeHeap().getTrimMinInterval());
+                });
+    }
+
+    /**
+     * Test that runtime hints are registered for native images.
+     */
+    @Test
+    public void shouldRegisterRuntimeHints() {
+        RuntimeHints hints = new RuntimeHints();
+        new JvmNmtMetricsRuntimeHints().registerHints(hints, getClass().getClassLoader());
+        assertTrue(RuntimeHintsPredicates.reflection().onType(JvmNmtMetricsProperties.class).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(JvmNmtMetricsProperties.Sampler.class).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(JvmNmtMetricsProperties.NativeHeap.class).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(NativeMemoryEndpointProperties.class).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(NativeMemoryReport.class).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(String[].class).test(hints));
+    }
+
+    /**
+     * Test that native memory endpoint is registered when exposed.
+     */
+    @Test
+    public void shouldCreateNativeMemoryEndpointWhenExposed() {
+        this.contextRunner
+                .withUserConfiguration(MeterRegistryConfiguration.class)
+                .withPropertyValues("management.endpoints.web.exposure.include=nativememory",
+                        "management.endpoint.nativememory.max-response-size=64KB")
+                .run(context -> {
+                    assertNotNull(context.getBean(NativeMemoryEndpoint.class),
+                            "NativeMemoryEndpoint bean should be created");
+                    assertEquals(DataSize.ofKilobytes(64),
+                            context.getBean(NativeMemoryEndpointProperties.class).getMaxResponseSize(),
+                            "Custom max response size should be applied");
+                });
+    }
+
+    /**
+     * Test that native memory endpoint is NOT registered when not exposed.
+     */
+    @Test
+    public void shouldNotCreateNativeMemoryEndpointWhenNotExposed() {
+        this.contextRunner
+                .withUserConfiguration(MeterRegistryConfiguration.class)
+                .run(context -> assertTrue(context.getBeansOfType(NativeMemoryEndpoint.class).isEmpty(),
+                        "NativeMemoryEndpoint bean should NOT be created when not exposed"));
+    }
+
     /**
      * Configuration that provides a MeterRegistry bean.
      */
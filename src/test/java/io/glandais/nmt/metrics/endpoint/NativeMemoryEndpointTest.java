@@ -0,0 +1,190 @@
+package io.glandais.nmt.metrics.endpoint;
+
+import net.minidev.json.JSONStyle;
+import net.minidev.json.JSONValue;
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMException;
+import javax.management.ReflectionException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link NativeMemoryEndpoint}.
+ * Requires JVM to be started with -XX:NativeMemoryTracking=summary
+ */
+public class NativeMemoryEndpointTest {
+
+    /**
+     * Endpoint counting DiagnosticCommand calls per option.
+     */
+    static class CountingNativeMemoryEndpoint extends NativeMemoryEndpoint {
+
+        final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+
+        CountingNativeMemoryEndpoint(final Duration minInterval, final int maxResponseSize) {
+            super(minInterval, minInterval, true, maxResponseSize);
+        }
+
+        @Override
+        protected String execute(final String option) throws JMException {
+            calls.computeIfAbsent(option, o -> new AtomicInteger()).incrementAndGet();
+            return super.execute(option);
+        }
+
+        int calls(final String option) {
+            return calls.getOrDefault(option, new AtomicInteger()).get();
+        }
+    }
+
+    /**
+     * @return JSON encoding of a report, instants being ISO-8601 strings as with Spring Boot defaults
+     */
+    private static String toJson(final NativeMemoryReport report) {
+        final Map<String, Object> json = new LinkedHashMap<>();
+        json.put("timestamp", String.valueOf(report.getTimestamp()));
+        json.put("reserved", report.getReserved());
+        json.put("committed", report.getCommitted());
+        json.put("baselineTimestamp", String.valueOf(report.getBaselineTimestamp()));
+        json.put("summaryDiff", report.getSummaryDiff());
+        json.put("detail", report.getDetail());
+        json.put("truncated", report.isTruncated());
+        // no "/" escaping, as Jackson
+        return JSONValue.toJSONString(json, new JSONStyle(JSONStyle.FLAG_PROTECT_4WEB));
+    }
+
+    @Test
+    public void shouldReturnParsedSummaryWithoutTakingBaseline() {
+        final CountingNativeMemoryEndpoint endpoint = new CountingNativeMemoryEndpoint(Duration.ZERO, 1024 * 1024);
+
+        final NativeMemoryReport report = endpoint.report(null);
+
+        assertNotNull(report.getTimestamp());
+        assertNull(report.getBaselineTimestamp(), "Baseline should not be taken by a read");
+        assertNull(report.getSummaryDiff(), "No summary diff without baseline");
+        assertTrue(report.getCommitted().get("total") > 0, "total committed should be positive");
+        assertTrue(report.getReserved().get("total") > 0, "total reserved should be positive");
+        assertNull(report.getDetail(), "Detail should only be returned when requested");
+        assertEquals(0, endpoint.calls("baseline"));
+        assertEquals(1, endpoint.calls("summary"));
+        assertEquals(0, endpoint.calls("summary.diff"));
+        assertEquals(0, endpoint.calls("detail"));
+
+        endpoint.report(true);
+        assertEquals(1, endpoint.calls("detail"));
+        assertEquals(0, endpoint.calls("baseline"));
+    }
+
+    @Test
+    public void shouldBuildReportFromSummaryDiffOnceBaselined() {
+        final CountingNativeMemoryEndpoint endpoint = new CountingNativeMemoryEndpoint(Duration.ZERO, 1024 * 1024);
+
+        final NativeMemoryReport report = endpoint.baseline();
+
+        assertNotNull(report.getBaselineTimestamp());
+        assertNotNull(report.getSummaryDiff());
+        assertTrue(report.getCommitted().get("total") > 0, "total committed should be parsed from summary diff");
+        assertEquals(1, endpoint.calls("baseline"));
+        assertEquals(1, endpoint.calls("summary.diff"));
+        assertEquals(0, endpoint.calls("summary"), "Current values should come from summary diff");
+    }
+
+    @Test
+    public void shouldNotCallDiagnosticCommandWithinMinInterval() {
+        final CountingNativeMemoryEndpoint endpoint = new CountingNativeMemoryEndpoint(Duration.ofMinutes(1),
+                1024 * 1024);
+
+        endpoint.baseline();
+        for (int i = 0; i < 10; i++) {
+            endpoint.report(true);
+        }
+
+        assertEquals(1, endpoint.calls("baseline"));
+        assertEquals(0, endpoint.calls("summary"));
+        assertEquals(1, endpoint.calls("summary.diff"));
+        assertEquals(1, endpoint.calls("detail"));
+    }
+
+    @Test
+    public void shouldTruncateRawOutputsToResponseSize() {
+        final CountingNativeMemoryEndpoint endpoint = new CountingNativeMemoryEndpoint(Duration.ZERO, 4096);
+
+        endpoint.baseline();
+        final NativeMemoryReport report = endpoint.report(true);
+
+        assertTrue(report.isTruncated());
+        assertFalse(report.getCommitted().isEmpty(), "Parsed summary should not be truncated");
+        final String json = toJson(report);
+        assertTrue(json.contains("\"truncated\":true"), json);
+        final int bytes = json.getBytes(StandardCharsets.UTF_8).length;
+        assertTrue(bytes <= 4096, "Report should fit in max response size, was " + bytes + " bytes");
+        assertTrue(bytes > 3500, "Report should use most of max response size, was " + bytes + " bytes");
+    }
+
+    @Test
+    public void shouldMeasureEncodedBytes() {
+        assertEquals(7, NativeMemoryEndpoint.encodedLength("a\u00e9\"\n"));
+        assertEquals("a\u00e9", NativeMemoryEndpoint.truncate("a\u00e9\"\n", 4));
+        assertEquals("a", NativeMemoryEndpoint.truncate("a\u00e9", 2));
+        assertEquals("", NativeMemoryEndpoint.truncate("abc", -1));
+    }
+
+    @Test
+    public void shouldResetBaseline() throws InterruptedException {
+        final CountingNativeMemoryEndpoint endpoint = new CountingNativeMemoryEndpoint(Duration.ZERO, 1024 * 1024);
+
+        final NativeMemoryReport first = endpoint.baseline();
+        Thread.sleep(10);
+        final NativeMemoryReport second = endpoint.baseline();
+
+        assertEquals(2, endpoint.calls("baseline"));
+        assertTrue(second.getBaselineTimestamp().isAfter(first.getBaselineTimestamp()));
+    }
+
+
+    @Test
+    public void shouldBeDisabledWhenDiagnosticCommandUnavailable() {
+        final CountingNativeMemoryEndpoint endpoint = new CountingNativeMemoryEndpoint(Duration.ZERO, 1024 * 1024) {
+            @Override
+            protected String execute(final String option) throws JMException {
+                calls.computeIfAbsent(option, o -> new AtomicInteger()).incrementAndGet();
+                throw new ReflectionException(new NoSuchMethodException("vmNativeMemory"));
+            }
+        };
+
+        assertNull(endpoint.report(true), "No report without DiagnosticCommand");
+        assertNull(endpoint.report(true));
+        assertNull(endpoint.baseline());
+
+        assertTrue(endpoint.isDisabled());
+        assertEquals(1, endpoint.calls("summary"), "No call after detection");
+        assertEquals(0, endpoint.calls("baseline"));
+        assertEquals(0, endpoint.calls("detail"));
+    }
+
+    @Test
+    public void shouldBeDisabledWhenNmtNotEnabled() {
+        final CountingNativeMemoryEndpoint endpoint = new CountingNativeMemoryEndpoint(Duration.ZERO, 1024 * 1024) {
+            @Override
+            protected String execute(final String option) {
+                calls.computeIfAbsent(option, o -> new AtomicInteger()).incrementAndGet();
+                return "Native memory tracking is not enabled";
+            }
+        };
+
+        assertNull(endpoint.baseline(), "No report without NMT");
+        assertNull(endpoint.report(false));
+
+        assertTrue(endpoint.isDisabled());
+        assertEquals(1, endpoint.calls("baseline"));
+        assertEquals(1, endpoint.calls("summary.diff"), "No call after detection");
+        assertEquals(0, endpoint.calls("summary"));
+    }
+
+}
@@ -0,0 +1,152 @@
+package io.glandais.nmt.metrics.harness;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * End-to-end overhead and accuracy harness.
+ * <p>
+ * For each scenario and scrape interval, starts a {@link NativeMemoryLoadGenerator} child JVM with
+ * {@code -XX:NativeMemoryTracking=summary}, and collects its results. Throughput loss is the median of interleaved
+ * scraping and reference windows of the child JVM (a scrape interval of 0 giving the noise floor), accuracy error is
+ * computed against the known allocation. Results are written as JSON, to be tracked across releases.
+ * </p>
+ * <p>
+ * Usage : {@code NMTHarness [report.json]}, see {@link NMTHarnessTest} to run it with Maven.
+ * </p>
+ */
+public class NMTHarness {
+
+    public static final List<String> SCENARIOS = Arrays.asList("direct", "unsafe", "threads", "classes");
+
+    public static final List<Long> SCRAPE_INTERVALS = Arrays.asList(0L, 1000L, 100L, 10L);
+
+    private final long durationMillis;
+
+    private final int sizeMb;
+
+    public NMTHarness(final long durationMillis, final int sizeMb) {
+        super();
+        this.durationMillis = durationMillis;
+        this.sizeMb = sizeMb;
+    }
+
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        final Path report = Paths.get(args.length > 0 ? args[0] : "target/nmt-harness-report.json");
+        final NMTHarness harness = new NMTHarness(10000L, 64);
+        harness.writeReport(harness.run(SCENARIOS, SCRAPE_INTERVALS), report);
+        System.out.println("Report written to " + report.toAbsolutePath());
+    }
+
+    /**
+     * Runs all scenarios with all scrape intervals.
+     *
+     * @return one result per run
+     */
+    public List<Map<String, Object>> run(final List<String> scenarios, final List<Long> scrapeIntervals)
+            throws IOException, InterruptedException {
+        final List<Map<String, Object>> results = new ArrayList<>();
+        for (final String scenario : scenarios) {
+            for (final Long scrapeInterval : scrapeIntervals) {
+                final Map<String, Object> result = runChild(scenario, scrapeInterval);
+                final long expected = Long.parseLong(result.get("expectedBytes").toString());
+                final long measured = Long.parseLong(result.get("measuredBytes").toString());
+                result.put("accuracyError", expected > 0 ? (double) (measured - expected) / expected : null);
+                results.add(result);
+            }
+        }
+        return results;
+    }
+
+    private Map<String, Object> runChild(final String scenario, final long scrapeInterval)
+            throws IOException, InterruptedException {
+        final List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-XX:NativeMemoryTracking=summary");
+        command.add("--add-exports=java.management/sun.management=ALL-UNNAMED");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(NativeMemoryLoadGenerator.class.getName());
+        command.add(scenario);
+        command.add(Long.toString(scrapeInterval));
+        command.add(Long.toString(durationMillis));
+        command.add(Integer.toString(sizeMb));
+
+        // output goes to a file : reading the pipe would block until the child exits, defeating the timeout
+        final Path outputFile = Files.createTempFile("nmt-harness-" + scenario, ".log");
+        final List<String> output;
+        try {
+            final Process process = new ProcessBuilder(command).redirectErrorStream(true)
+                    .redirectOutput(outputFile.toFile()).start();
+            if (!process.waitFor(durationMillis * 2 + 60_000L, TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly();
+                throw new IOException("Child JVM timed out for " + scenario);
+            }
+            output = Files.readAllLines(outputFile, StandardCharsets.UTF_8);
+        } finally {
+            Files.deleteIfExists(outputFile);
+        }
+        final String resultLine = output.stream().filter(line -> line.startsWith("RESULT ")).findFirst()
+                .orElseThrow(() -> new IOException("No result for " + scenario + " : " + String.join("\n", output)));
+
+        final Map<String, Object> result = new LinkedHashMap<>();
+        for (final String entry : resultLine.substring("RESULT ".length()).split(" ")) {
+            final int separator = entry.indexOf('=');
+            result.put(entry.substring(0, separator), entry.substring(separator + 1));
+        }
+        return result;
+    }
+
+    /**
+     * Writes results as JSON.
+     */
+    public void writeReport(final List<Map<String, Object>> results, final Path file) throws IOException {
+        final StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"timestamp\": \"").append(Instant.now()).append("\",\n");
+        json.append("  \"javaVersion\": \"").append(System.getProperty("java.version")).append("\",\n");
+        json.append("  \"durationMillis\": ").append(durationMillis).append(",\n");
+        json.append("  \"sizeMb\": ").append(sizeMb).append(",\n");
+        json.append("  \"results\": [");
+        String separator = "\n";
+        for (final Map<String, Object> result : results) {
+            json.append(separator).append("    {");
+            json.append(result.entrySet().stream()
+                    .map(entry -> "\"" + entry.getKey() + "\": " + jsonValue(entry.getValue()))
+                    .collect(Collectors.joining(", ")));
+            json.append("}");
+            separator = ",\n";
+        }
+        json.append("\n  ]\n}\n");
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Files.writeString(file, json.toString());
+    }
+
+    private static String jsonValue(final Object value) {
+        if (value == null) {
+            return "null";
+        }
+        if (value instanceof Number) {
+            return value.toString();
+        }
+        final String text = value.toString();
+        if (text.matches("-?\\d+(\\.\\d+)?")) {
+            return text;
+        }
+        return "\"" + text.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+}
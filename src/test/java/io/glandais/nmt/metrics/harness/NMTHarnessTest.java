@@ -0,0 +1,53 @@
+package io.glandais.nmt.metrics.harness;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs {@link NMTHarness} with short runs, and checks NMT gauges accuracy.
+ * <p>
+ * Disabled by default as it starts several child JVMs, run it with
+ * {@code mvn test -Dtest=NMTHarnessTest -Dnmt.harness=true}. The report is written to
+ * {@code target/nmt-harness-report.json}.
+ * </p>
+ */
+@EnabledIfSystemProperty(named = "nmt.harness", matches = "true")
+public class NMTHarnessTest {
+
+    @Test
+    public void shouldMeasureOverheadAndAccuracy() throws IOException, InterruptedException {
+        final NMTHarness harness = new NMTHarness(2000L, 32);
+        final List<Map<String, Object>> results = harness.run(NMTHarness.SCENARIOS, Arrays.asList(0L, 100L));
+
+        final Path report = Paths.get("target", "nmt-harness-report.json");
+        harness.writeReport(results, report);
+        assertTrue(Files.exists(report));
+
+        assertEquals(NMTHarness.SCENARIOS.size() * 2, results.size());
+        for (final Map<String, Object> result : results) {
+            final Object error = result.get("accuracyError");
+            if (error != null) {
+                assertTrue(Math.abs((Double) error) < 0.25,
+                        "Gauges should track known allocations : " + result);
+            }
+            final double loss = Double.parseDouble(result.get("throughputLoss").toString());
+            assertTrue(Double.parseDouble(result.get("throughputLossMin").toString()) <= loss
+                    && loss <= Double.parseDouble(result.get("throughputLossMax").toString()),
+                    "Median loss should be within its spread : " + result);
+            if (!result.get("scrapeIntervalMillis").equals("0")) {
+                assertTrue(Long.parseLong(result.get("scrapes").toString()) > 0, "Scrapes should run : " + result);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,359 @@
+package io.glandais.nmt.metrics.harness;
+
+import io.glandais.nmt.metrics.JvmNmtMetrics;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Child JVM of {@link NMTHarness}, started with {@code -XX:NativeMemoryTracking=summary}.
+ * <p>
+ * Generates a controlled native memory load, then runs a CPU workload in alternating windows, scraping
+ * {@link JvmNmtMetrics} at a given interval in one window out of two. After a warm-up, {@value #ROUNDS} pairs of
+ * windows are run in ABBA order, and the throughput loss of each pair is computed : the median loss and its spread
+ * are reported, with scrape latency, safepoint time and the NMT delta of the loaded category compared to the known
+ * allocation, in a single {@code RESULT key=value...} line.
+ * </p>
+ * <p>
+ * Arguments : {@code <scenario> <scrapeIntervalMillis> <durationMillis> <sizeMb>}, scenario being one of
+ * {@code direct}, {@code unsafe}, {@code threads} or {@code classes}. A scrape interval of 0 disables scraping,
+ * measuring the noise floor of the throughput loss. The duration is the total of measured windows.
+ * </p>
+ */
+public class NativeMemoryLoadGenerator {
+
+    private static final int MB = 1024 * 1024;
+
+    private static final String COMMITTED = "jvm.memory.nmt.committed";
+
+    private static final String RESERVED = "jvm.memory.nmt.reserved";
+
+    /**
+     * Number of scraping / reference window pairs
+     */
+    private static final int ROUNDS = 5;
+
+    /**
+     * Class loaded by dedicated class loaders in the classes scenario.
+     */
+    public static class Payload {
+        public static final long[] DATA = new long[16];
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final String scenario = args[0];
+        final long scrapeIntervalMillis = Long.parseLong(args[1]);
+        final long durationMillis = Long.parseLong(args[2]);
+        final int sizeMb = Integer.parseInt(args[3]);
+
+        final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        // one collection per scrape, as cache duration should match scrape interval
+        final Duration cacheDuration = Duration.ofMillis(Math.max(1L, scrapeIntervalMillis / 2));
+        final JvmNmtMetrics metrics = new JvmNmtMetrics(cacheDuration, Duration.ofSeconds(5), 3,
+                Duration.ofMinutes(1));
+        metrics.bindTo(registry);
+        metrics.awaitInitialCollection(Duration.ofSeconds(30));
+
+        final Map<String, Double> committedBefore = values(registry, COMMITTED);
+        final Map<String, Double> reservedBefore = values(registry, RESERVED);
+
+        final List<Object> retained = new ArrayList<>();
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final long expectedBytes = load(scenario, sizeMb, retained, running);
+
+        // let a scrape see the load before measuring
+        Thread.sleep(Math.max(10L, scrapeIntervalMillis));
+        final Map<String, Double> committedAfter = values(registry, COMMITTED);
+        final Map<String, Double> reservedAfter = values(registry, RESERVED);
+
+        final AtomicBoolean scraping = new AtomicBoolean(false);
+        final AtomicLong scrapes = new AtomicLong();
+        final AtomicLong scrapeNanos = new AtomicLong();
+        final AtomicLong maxScrapeNanos = new AtomicLong();
+        Thread scraper = null;
+        if (scrapeIntervalMillis > 0) {
+            scraper = new Thread(() -> {
+                while (running.get()) {
+                    if (scraping.get()) {
+                        final long start = System.nanoTime();
+                        values(registry, COMMITTED);
+                        final long elapsed = System.nanoTime() - start;
+                        scrapes.incrementAndGet();
+                        scrapeNanos.addAndGet(elapsed);
+                        maxScrapeNanos.accumulateAndGet(elapsed, Math::max);
+                    }
+                    sleep(scrapeIntervalMillis);
+                }
+            }, "scraper");
+            scraper.setDaemon(true);
+            scraper.start();
+        }
+
+        // warm-up JIT of both workload and scrape paths, then forget scrape statistics
+        final long windowMillis = Math.max(10L, durationMillis / (2 * ROUNDS));
+        scraping.set(true);
+        workload(windowMillis * 2);
+        scraping.set(false);
+        workload(windowMillis * 2);
+        scrapes.set(0);
+        scrapeNanos.set(0);
+        maxScrapeNanos.set(0);
+
+        // scraping and reference windows are interleaved (ABBA) in the same JVM, cancelling JIT and load drifts
+        final double[] operations = new double[ROUNDS];
+        final double[] referenceOperations = new double[ROUNDS];
+        final double[] losses = new double[ROUNDS];
+        long safepointTime = 0;
+        long referenceSafepointTime = 0;
+        long safepoints = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int window = 0; window < 2; window++) {
+                final boolean scrapingWindow = (window == 0) == (round % 2 == 0);
+                scraping.set(scrapingWindow);
+                final long safepointTimeBefore = safepointTimeMillis();
+                final long safepointCountBefore = safepointCount();
+                final double opsPerSecond = workload(windowMillis) * 1000.0 / windowMillis;
+                final long safepointTimeDelta = safepointTimeMillis() - safepointTimeBefore;
+                if (scrapingWindow) {
+                    operations[round] = opsPerSecond;
+                    safepointTime += safepointTimeDelta;
+                    safepoints += safepointCount() - safepointCountBefore;
+                } else {
+                    referenceOperations[round] = opsPerSecond;
+                    referenceSafepointTime += safepointTimeDelta;
+                }
+            }
+            losses[round] = referenceOperations[round] > 0 ? 1.0 - operations[round] / referenceOperations[round] : 0;
+        }
+        scraping.set(false);
+        final boolean safepointsAvailable = safepointTimeMillis() >= 0;
+
+        running.set(false);
+        if (scraper != null) {
+            scraper.join();
+        }
+
+        final String category = category(scenario, committedAfter);
+        final boolean reservedBased = scenario.equals("threads");
+        final Map<String, Double> before = reservedBased ? reservedBefore : committedBefore;
+        final Map<String, Double> after = reservedBased ? reservedAfter : committedAfter;
+        final long measuredBytes = (long) (after.getOrDefault(category, 0.0) - before.getOrDefault(category, 0.0));
+
+        final Map<String, Object> result = new LinkedHashMap<>();
+        result.put("scenario", scenario);
+        result.put("scrapeIntervalMillis", scrapeIntervalMillis);
+        result.put("rounds", ROUNDS);
+        result.put("windowMillis", windowMillis);
+        result.put("operationsPerSecond", (long) median(operations));
+        result.put("referenceOperationsPerSecond", (long) median(referenceOperations));
+        result.put("throughputLoss", format(median(losses)));
+        result.put("throughputLossMin", format(Arrays.stream(losses).min().orElse(0)));
+        result.put("throughputLossMax", format(Arrays.stream(losses).max().orElse(0)));
+        result.put("scrapes", scrapes.get());
+        result.put("meanScrapeMicros", scrapes.get() == 0 ? 0 : scrapeNanos.get() / scrapes.get() / 1000L);
+        result.put("maxScrapeMicros", maxScrapeNanos.get() / 1000L);
+        result.put("safepointTimeMillis", safepointsAvailable ? safepointTime : -1);
+        result.put("referenceSafepointTimeMillis", safepointsAvailable ? referenceSafepointTime : -1);
+        result.put("safepoints", safepointsAvailable ? safepoints : -1);
+        result.put("category", category);
+        result.put("expectedBytes", expectedBytes);
+        result.put("measuredBytes", measuredBytes);
+        result.put("retained", retained.size());
+
+        final StringBuilder line = new StringBuilder("RESULT");
+        result.forEach((key, value) -> line.append(' ').append(key).append('=').append(value));
+        System.out.println(line);
+        System.exit(0);
+    }
+
+    /**
+     * Applies the native memory load of a scenario.
+     *
+     * @return known allocated bytes, or -1 if unknown
+     */
+    private static long load(final String scenario, final int sizeMb, final List<Object> retained,
+                             final AtomicBoolean running) throws Exception {
+        switch (scenario) {
+            case "direct":
+                for (int i = 0; i < sizeMb; i++) {
+                    final ByteBuffer buffer = ByteBuffer.allocateDirect(MB);
+                    for (int j = 0; j < MB; j += 4096) {
+                        buffer.put(j, (byte) 1);
+                    }
+                    retained.add(buffer);
+                }
+                return (long) sizeMb * MB;
+            case "unsafe":
+                final Object unsafe = unsafe();
+                final Method allocateMemory = unsafe.getClass().getMethod("allocateMemory", long.class);
+                final Method putByte = unsafe.getClass().getMethod("putByte", long.class, byte.class);
+                for (int i = 0; i < sizeMb; i++) {
+                    final long address = (long) allocateMemory.invoke(unsafe, (long) MB);
+                    for (int j = 0; j < MB; j += 4096) {
+                        putByte.invoke(unsafe, address + j, (byte) 1);
+                    }
+                    retained.add(address);
+                }
+                return (long) sizeMb * MB;
+            case "threads":
+                // one parked thread per MB of stack, plus short lived threads churn
+                final CountDownLatch started = new CountDownLatch(sizeMb);
+                for (int i = 0; i < sizeMb; i++) {
+                    final Thread thread = new Thread(null, () -> {
+                        started.countDown();
+                        while (running.get()) {
+                            sleep(10L);
+                        }
+                    }, "parked-" + i, MB);
+                    thread.setDaemon(true);
+                    thread.start();
+                    retained.add(thread);
+                }
+                started.await(10, TimeUnit.SECONDS);
+                final Thread churn = new Thread(() -> {
+                    while (running.get()) {
+                        final Thread thread = new Thread(() -> {
+                        });
+                        thread.start();
+                        try {
+                            thread.join();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    }
+                }, "churn");
+                churn.setDaemon(true);
+                churn.start();
+                return (long) sizeMb * MB;
+            case "classes":
+                final URL location = Payload.class.getProtectionDomain().getCodeSource().getLocation();
+                for (int i = 0; i < sizeMb * 100; i++) {
+                    final URLClassLoader classLoader = new URLClassLoader(new URL[]{location},
+                            ClassLoader.getPlatformClassLoader());
+                    final Class<?> payload = classLoader.loadClass(Payload.class.getName());
+                    payload.getField("DATA").get(null);
+                    retained.add(payload);
+                }
+                return -1L;
+            default:
+                throw new IllegalArgumentException("Unknown scenario " + scenario);
+        }
+    }
+
+    private static String category(final String scenario, final Map<String, Double> committed) {
+        switch (scenario) {
+            case "direct":
+            case "unsafe":
+                // Unsafe.allocateMemory is tracked as "Other" since JDK 11, "Internal" before
+                return committed.containsKey("other") ? "other" : "internal";
+            case "threads":
+                return "thread";
+            default:
+                return committed.containsKey("metaspace") ? "metaspace" : "class";
+        }
+    }
+
+    private static double median(final double[] values) {
+        final double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        final int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+
+    private static String format(final double value) {
+        return String.format(Locale.ROOT, "%.4f", value);
+    }
+
+    private static long workload(final long durationMillis) {
+        final byte[] data = new byte[4096];
+        final CRC32 crc = new CRC32();
+        final long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        long operations = 0;
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < 100; i++) {
+                data[i] = (byte) operations;
+                crc.update(data);
+                operations++;
+            }
+        }
+        if (crc.getValue() == 42) {
+            System.out.println("Unlikely");
+        }
+        return operations;
+    }
+
+    private static Map<String, Double> values(final SimpleMeterRegistry registry, final String name) {
+        final Map<String, Double> values = new LinkedHashMap<>();
+        for (final Meter meter : registry.getMeters()) {
+            if (meter instanceof Gauge && meter.getId().getName().equals(name)) {
+                values.put(meter.getId().getTag("category"), ((Gauge) meter).value());
+            }
+        }
+        return values;
+    }
+
+    private static Object unsafe() throws ReflectiveOperationException {
+        final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+        final Field field = unsafeClass.getDeclaredField("theUnsafe");
+        field.setAccessible(true);
+        return field.get(null);
+    }
+
+    private static Object hotspotRuntime() {
+        try {
+            final Class<?> helper = Class.forName("sun.management.ManagementFactoryHelper");
+            final Method method = helper.getMethod("getHotspotRuntimeMBean");
+            return method.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static long safepointTimeMillis() {
+        return invokeLong(hotspotRuntime(), "getTotalSafepointTime");
+    }
+
+    private static long safepointCount() {
+        return invokeLong(hotspotRuntime(), "getSafepointCount");
+    }
+
+    private static long invokeLong(final Object target, final String method) {
+        if (target == null) {
+            return -1L;
+        }
+        try {
+            final Method m = Class.forName("sun.management.HotspotRuntimeMBean").getMethod(method);
+            return (long) m.invoke(target);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return -1L;
+        }
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package io.glandais.nmt.metrics.retriever;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link CoalescingSupplier}.
+ */
+public class CoalescingSupplierTest {
+
+    @Test
+    public void shouldCoalesceConcurrentCalls() throws InterruptedException, ExecutionException {
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final CoalescingSupplier<Integer> supplier = new CoalescingSupplier<>(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return calls.incrementAndGet();
+        }, Duration.ZERO);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(supplier::get));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (final Future<Integer> future : futures) {
+                assertEquals(1, future.get().intValue(), "All callers should share the same call");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void shouldReturnLastValueWithinMinInterval() throws InterruptedException {
+        final AtomicInteger calls = new AtomicInteger();
+        final CoalescingSupplier<Integer> supplier = new CoalescingSupplier<>(calls::incrementAndGet,
+                Duration.ofMillis(100));
+
+        assertEquals(1, supplier.get().intValue());
+        assertEquals(1, supplier.get().intValue());
+
+        Thread.sleep(150);
+        assertEquals(2, supplier.get().intValue());
+
+        supplier.reset();
+        assertEquals(3, supplier.get().intValue());
+    }
+
+    @Test
+    public void shouldRetryAfterFailure() {
+        final AtomicInteger calls = new AtomicInteger();
+        final CoalescingSupplier<Integer> supplier = new CoalescingSupplier<>(() -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("failure");
+            }
+            return calls.get();
+        }, Duration.ofMinutes(1));
+
+        assertThrows(IllegalStateException.class, supplier::get);
+        assertEquals(2, supplier.get().intValue());
+    }
+
+}
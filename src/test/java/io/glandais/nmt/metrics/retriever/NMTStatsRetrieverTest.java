@@ -5,7 +5,13 @@ import io.glandais.nmt.metrics.bean.NativeMemoryTrackingValues;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import javax.management.JMException;
+import javax.management.ReflectionException;
+import java.util.concurrent.ExecutionException;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class NMTStatsRetrieverTest {
 
@@ -133,4 +139,84 @@ public class NMTStatsRetrieverTest {
         assertEquals(20262, nmtProperties.get(NativeMemoryTrackingKind.RESERVED).get(key).longValue());
         assertEquals(20262, nmtProperties.get(NativeMemoryTrackingKind.COMMITTED).get(key).longValue());
     }
+
+    @Test
+    public void testJdk21Format() {
+        final NativeMemoryTrackingValues values = NMTStatsRetriever.extractFromNmtOutput("12345:\n" +
+                "\n" +
+                "Native Memory Tracking:\n" +
+                "\n" +
+                "(Omitting categories weighting less than 1KB)\n" +
+                "\n" +
+                "Total: reserved=2939208KB, committed=124644KB\n" +
+                "       malloc: 4608KB #18465, peak=5120KB #19000\n" +
+                "       mmap:   reserved=2934600KB, committed=120036KB\n" +
+                "\n" +
+                "-                 Java Heap (reserved=1538048KB, committed=96256KB)\n" +
+                "                            (mmap: reserved=1538048KB, committed=96256KB, at peak) \n" +
+                " \n" +
+                "-                    Thread (reserved=13348KB, committed=708KB)\n" +
+                "                            (threads #13)\n" +
+                "                            (stack: reserved=13312KB, committed=672KB, peak=700KB)\n" +
+                " \n" +
+                "-        Shared class space (reserved=16384KB, committed=12136KB, readonly=0KB)\n" +
+                "                            (mmap: reserved=16384KB, committed=12136KB) \n");
+        assertEquals(2939208, values.get(NativeMemoryTrackingKind.RESERVED).get("total").longValue());
+        assertEquals(124644, values.get(NativeMemoryTrackingKind.COMMITTED).get("total").longValue());
+        assertEquals(708, values.get(NativeMemoryTrackingKind.COMMITTED).get("thread").longValue());
+        assertEquals(16384, values.get(NativeMemoryTrackingKind.RESERVED).get("shared.class.space").longValue());
+        assertEquals(12136, values.get(NativeMemoryTrackingKind.COMMITTED).get("shared.class.space").longValue());
+        assertEquals(4, values.get(NativeMemoryTrackingKind.COMMITTED).size());
+    }
+
+    @Test
+    public void testScaledOutput() {
+        final NativeMemoryTrackingValues values = NMTStatsRetriever.extractFromNmtOutput(
+                "Total: reserved=1436MB, committed=166MB\n" +
+                        "-                 Java Heap (reserved=64MB, committed=45MB)\n" +
+                        "-                     Class (reserved=1GB, committed=35MB)\n");
+        assertEquals(1436 * 1024, values.get(NativeMemoryTrackingKind.RESERVED).get("total").longValue());
+        assertEquals(45 * 1024, values.get(NativeMemoryTrackingKind.COMMITTED).get("java.heap").longValue());
+        assertEquals(1024 * 1024, values.get(NativeMemoryTrackingKind.RESERVED).get("class").longValue());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testDeprecatedExtractors() {
+        final String output = "Total: reserved=1436KB, committed=166KB\n" +
+                "-                 Java Heap (reserved=64KB, committed=45KB)\n";
+        final NativeMemoryTrackingValues values = new NativeMemoryTrackingValues();
+        NMTStatsRetriever.extractTotalProperty(values, output);
+        assertEquals(1, values.get(NativeMemoryTrackingKind.COMMITTED).size());
+        NMTStatsRetriever.extractAllCategories(values, output);
+        assertEquals(166, values.get(NativeMemoryTrackingKind.COMMITTED).get("total").longValue());
+        assertEquals(64, values.get(NativeMemoryTrackingKind.RESERVED).get("java.heap").longValue());
+    }
+
+    @Test
+    public void testSummaryDiffOutput() {
+        final NativeMemoryTrackingValues values = NMTStatsRetriever.extractFromNmtOutput(
+                "Total: reserved=3067630KB +115367KB, committed=253558KB +106943KB\n" +
+                        "-                 Java Heap (reserved=1538048KB, committed=96256KB)\n" +
+                        "-                    Thread (reserved=22596KB +9248KB, committed=1552KB -824KB)\n");
+        assertEquals(3067630, values.get(NativeMemoryTrackingKind.RESERVED).get("total").longValue());
+        assertEquals(253558, values.get(NativeMemoryTrackingKind.COMMITTED).get("total").longValue());
+        assertEquals(96256, values.get(NativeMemoryTrackingKind.COMMITTED).get("java.heap").longValue());
+        assertEquals(22596, values.get(NativeMemoryTrackingKind.RESERVED).get("thread").longValue());
+        assertEquals(1552, values.get(NativeMemoryTrackingKind.COMMITTED).get("thread").longValue());
+    }
+
+    @Test
+    public void testUnsupportedDetection() {
+        final ReflectionException missing = new ReflectionException(new NoSuchMethodException("vmNativeMemory"));
+        assertTrue(NMTStatsRetriever.isUnsupported(missing));
+        assertTrue(NMTStatsRetriever.isUnsupported(new ExecutionException(missing)));
+        assertTrue(NMTStatsRetriever.isUnsupported(new UnsupportedOperationException()));
+        assertFalse(NMTStatsRetriever.isUnsupported(new JMException("failure")));
+        assertFalse(NMTStatsRetriever.isUnsupported(new ExecutionException(new IllegalStateException())));
+
+        assertTrue(NMTStatsRetriever.isNotEnabled(
+                NMTStatsRetriever.extractFromNmtOutput("Native memory tracking is not enabled")));
+        assertFalse(NMTStatsRetriever.isNotEnabled(nmtProperties));
+    }
 }
@@ -0,0 +1,71 @@
+package io.glandais.nmt.metrics.retriever;
+
+import io.glandais.nmt.metrics.bean.NativeHeapInfo;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class NativeHeapRetrieverTest {
+
+    public static final String NATIVE_HEAP_INFO = "<malloc version=\"1\">\n" +
+            "<heap nr=\"0\">\n" +
+            "<sizes>\n" +
+            "  <size from=\"17\" to=\"32\" total=\"64\" count=\"2\"/>\n" +
+            "  <unsorted from=\"193\" to=\"193\" total=\"193\" count=\"1\"/>\n" +
+            "</sizes>\n" +
+            "<total type=\"fast\" count=\"2\" size=\"64\"/>\n" +
+            "<total type=\"rest\" count=\"5\" size=\"1000000\"/>\n" +
+            "<system type=\"current\" size=\"2000000\"/>\n" +
+            "<system type=\"max\" size=\"3000000\"/>\n" +
+            "<aspace type=\"total\" size=\"2000000\"/>\n" +
+            "<aspace type=\"mprotect\" size=\"2000000\"/>\n" +
+            "</heap>\n" +
+            "<heap nr=\"1\">\n" +
+            "<sizes>\n" +
+            "</sizes>\n" +
+            "<total type=\"fast\" count=\"0\" size=\"0\"/>\n" +
+            "<total type=\"rest\" count=\"1\" size=\"36\"/>\n" +
+            "<system type=\"current\" size=\"135168\"/>\n" +
+            "<system type=\"max\" size=\"135168\"/>\n" +
+            "<aspace type=\"total\" size=\"135168\"/>\n" +
+            "<aspace type=\"mprotect\" size=\"135168\"/>\n" +
+            "<aspace type=\"subheaps\" size=\"1\"/>\n" +
+            "</heap>\n" +
+            "<total type=\"fast\" count=\"2\" size=\"64\"/>\n" +
+            "<total type=\"rest\" count=\"6\" size=\"1000036\"/>\n" +
+            "<total type=\"mmap\" count=\"3\" size=\"4194304\"/>\n" +
+            "<system type=\"current\" size=\"2135168\"/>\n" +
+            "<system type=\"max\" size=\"3135168\"/>\n" +
+            "<aspace type=\"total\" size=\"2135168\"/>\n" +
+            "<aspace type=\"mprotect\" size=\"2135168\"/>\n" +
+            "</malloc>\n";
+
+    @Test
+    public void testNativeHeapInfo() {
+        final NativeHeapInfo info = NativeHeapRetriever.extractFromNativeHeapInfo(NATIVE_HEAP_INFO);
+        assertNotNull(info);
+        assertEquals(2, info.getArenas());
+        assertEquals(2135168L, info.getSystemBytes());
+        assertEquals(1000100L, info.getFreeBytes());
+        assertEquals(4194304L, info.getMmapBytes());
+    }
+
+    @Test
+    public void testNativeHeapInfoUnavailable() {
+        assertNull(NativeHeapRetriever.extractFromNativeHeapInfo("Not available (crashed)"));
+    }
+
+    @Test
+    public void testReclaimedBytes() {
+        assertEquals(96L * 1024, NativeHeapRetriever.extractReclaimedBytes(
+                "Trim native heap: RSS+Swap: 8552K->8456K (-96K)"));
+        assertEquals(512L * 1024 * 1024, NativeHeapRetriever.extractReclaimedBytes(
+                "Trim native heap: RSS+Swap: 2G->1536M (-512M)"));
+        assertEquals(0L, NativeHeapRetriever.extractReclaimedBytes(
+                "Trim native heap: RSS+Swap: 44676K->44676K (+0B)"));
+        assertEquals(0L, NativeHeapRetriever.extractReclaimedBytes("Done."));
+    }
+
+}